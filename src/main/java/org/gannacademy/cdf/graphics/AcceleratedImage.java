@@ -0,0 +1,82 @@
+package org.gannacademy.cdf.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * <p>Copy of an image kept in video memory</p>
+ *
+ * <p>Drawing a {@link VolatileImage} onto the screen is as fast as drawing gets, but its contents may be lost at any
+ * time (e.g. when the display mode changes), so they have to be checked and, if necessary, restored from the original
+ * image every time that it is drawn. If the image cannot be accelerated (e.g. because it is being drawn off-screen),
+ * the original image is drawn instead.</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ */
+class AcceleratedImage {
+  private static final int ATTEMPTS = 2;
+
+  private final BufferedImage image;
+  private VolatileImage accelerated = null;
+  private boolean flushed = false;
+
+  AcceleratedImage(BufferedImage image) {
+    this.image = image;
+  }
+
+  /**
+   * <p>Draw the image, from video memory if possible</p>
+   *
+   * <p>Only drawing on screen uses (and locks) the copy in video memory; drawing off screen (e.g. into the tiles of a
+   * {@link org.gannacademy.cdf.graphics.ui.TileRenderer}) draws the original image without locking.</p>
+   *
+   * @param graphics context for drawing instructions
+   * @param x        coordinate of image origin
+   * @param y        coordinate of image origin
+   */
+  void draw(Graphics2D graphics, int x, int y) {
+    GraphicsConfiguration configuration = graphics.getDeviceConfiguration();
+    if (configuration.getDevice().getType() == GraphicsDevice.TYPE_RASTER_SCREEN) {
+      drawAccelerated(graphics, configuration, x, y);
+    } else {
+      graphics.drawImage(image, x, y, null);
+    }
+  }
+
+  private synchronized void drawAccelerated(Graphics2D graphics, GraphicsConfiguration configuration, int x, int y) {
+    for (int attempt = 0; !flushed && attempt < ATTEMPTS; attempt++) {
+      int status = accelerated == null ? VolatileImage.IMAGE_INCOMPATIBLE : accelerated.validate(configuration);
+      if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+        if (accelerated != null) {
+          accelerated.flush();
+        }
+        accelerated = configuration.createCompatibleVolatileImage(image.getWidth(), image.getHeight(),
+                image.getTransparency());
+        status = VolatileImage.IMAGE_RESTORED;
+      }
+      if (status == VolatileImage.IMAGE_RESTORED) {
+        Graphics2D restore = accelerated.createGraphics();
+        restore.setComposite(AlphaComposite.Src);
+        restore.drawImage(image, 0, 0, null);
+        restore.dispose();
+      }
+      graphics.drawImage(accelerated, x, y, null);
+      if (!accelerated.contentsLost()) {
+        return;
+      }
+    }
+    graphics.drawImage(image, x, y, null);
+  }
+
+  /**
+   * Release the copy in video memory, after which the original image is always drawn instead
+   */
+  synchronized void flush() {
+    flushed = true;
+    if (accelerated != null) {
+      accelerated.flush();
+      accelerated = null;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package org.gannacademy.cdf.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * <p>Create and convert images in the pixel format that draws fastest</p>
+ *
+ * <p>Java2D has fast drawing routines for images whose pixel format matches the screen (or, without a screen, for
+ * images with integer pixels), but falls back to slow general-purpose routines for other formats, such as the
+ * byte-per-channel and custom formats that {@link javax.imageio.ImageIO} often returns. Images in a compatible format
+ * can also be cached in video memory by Java2D.</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ */
+public final class CompatibleImage {
+
+  private CompatibleImage() {
+  }
+
+  /**
+   * Create a new, blank image in a compatible format
+   *
+   * @param width        of the image
+   * @param height       of the image
+   * @param transparency of the image (one of {@link Transparency#OPAQUE}, {@link Transparency#BITMASK} or {@link
+   *                     Transparency#TRANSLUCENT})
+   * @return Blank image, in the default screen's compatible format (or {@link BufferedImage#TYPE_INT_RGB} or {@link
+   * BufferedImage#TYPE_INT_ARGB_PRE} if there is no screen)
+   */
+  public static BufferedImage create(int width, int height, int transparency) {
+    if (GraphicsEnvironment.isHeadless()) {
+      return new BufferedImage(width, height,
+              transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+    return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+            .createCompatibleImage(width, height, transparency);
+  }
+
+  /**
+   * Copy an image into a compatible format
+   *
+   * @param image to convert
+   * @return {@code image} itself if it is already in a compatible format, otherwise a compatible copy of {@code
+   * image} (or {@code null} if {@code image} is {@code null})
+   */
+  public static BufferedImage convert(BufferedImage image) {
+    if (image == null || isCompatible(image)) {
+      return image;
+    }
+    BufferedImage compatible = create(image.getWidth(), image.getHeight(), image.getTransparency());
+    Graphics2D graphics = compatible.createGraphics();
+    graphics.setComposite(AlphaComposite.Src);
+    graphics.drawImage(image, 0, 0, null);
+    graphics.dispose();
+    return compatible;
+  }
+
+  /**
+   * Test if an image is in a compatible format
+   *
+   * @param image to test
+   * @return {@code true} if the image's pixel format matches that of a new compatible image with the same
+   * transparency, {@code false} otherwise
+   */
+  public static boolean isCompatible(BufferedImage image) {
+    BufferedImage sample = create(1, 1, image.getTransparency());
+    return image.getType() != BufferedImage.TYPE_CUSTOM
+            ? image.getType() == sample.getType()
+            : image.getColorModel().equals(sample.getColorModel());
+  }
+}
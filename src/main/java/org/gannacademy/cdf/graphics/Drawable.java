@@ -1,12 +1,11 @@
 package org.gannacademy.cdf.graphics;
 
 import org.gannacademy.cdf.graphics.ui.DrawingPanel;
+import org.gannacademy.cdf.graphics.ui.SvgWriter;
 
 import java.awt.*;
-import java.awt.geom.AffineTransform;
-import java.awt.geom.PathIterator;
-import java.awt.geom.Point2D;
-import java.awt.geom.Rectangle2D;
+import java.awt.geom.*;
+import java.io.IOException;
 
 /**
  * <p>The superclass of all drawable components</p>
@@ -27,12 +26,83 @@ public abstract class Drawable implements AutoCloseable {
    */
   public static final Stroke NO_STROKE = new BasicStroke(0);
 
+  /**
+   * <p>An unchanging copy of everything needed to draw a component</p>
+   *
+   * <p>Subclasses that draw more than a shape, stroke and fill should extend this class to copy whatever else they
+   * need, and override {@link #captureState()}, {@link #draw(Graphics2D, State)} and {@link #writeSvg(SvgWriter,
+   * State)}.</p>
+   *
+   * @see #commit()
+   */
+  protected static class State {
+    /**
+     * Copy of the underlying {@link Shape} geometry
+     */
+    protected final Shape shape;
+
+    /**
+     * Stroke style
+     */
+    protected final Stroke stroke;
+
+    /**
+     * Stroke and fill colors
+     */
+    protected final Color strokeColor, fillColor;
+
+    /**
+     * Enclosing bounding box of all pixels that may be affected when this state is drawn (computed once, as the state
+     * is copied, and never modified)
+     */
+    private final Rectangle2D renderedBounds;
+
+    /**
+     * Copy the current state of a component
+     *
+     * @param component to copy
+     */
+    protected State(Drawable component) {
+      shape = copy(component.getShape());
+      stroke = component.getStroke();
+      strokeColor = component.getStrokeColor();
+      fillColor = component.getFillColor();
+      renderedBounds = component.getRenderedBounds(new Rectangle2D.Double());
+    }
+
+    private static Shape copy(Shape shape) {
+      if (shape instanceof RectangularShape) {
+        return (Shape) ((RectangularShape) shape).clone();
+      } else if (shape instanceof Line2D) {
+        return (Shape) ((Line2D) shape).clone();
+      } else if (shape instanceof QuadCurve2D) {
+        return (Shape) ((QuadCurve2D) shape).clone();
+      } else if (shape instanceof CubicCurve2D) {
+        return (Shape) ((CubicCurve2D) shape).clone();
+      } else if (shape instanceof Path2D) {
+        return (Shape) ((Path2D) shape).clone();
+      }
+      return new Path2D.Double(shape);
+    }
+  }
+
   private DrawingPanel drawingPanel;
   private Shape shape;
   private Stroke stroke = new BasicStroke();
   private boolean filled = false;
   private Color strokeColor = Color.BLACK, fillColor = TRANSPARENT;
 
+  /**
+   * Cached bounding box of the underlying {@link Shape} (valid until the next call to {@link #changed()})
+   */
+  private final Rectangle2D.Double bounds = new Rectangle2D.Double();
+  private boolean boundsValid = false;
+
+  /**
+   * State of the component as of the most recent commit (or {@code null} if it has never been committed)
+   */
+  private volatile State committed;
+
   /**
    * Drawing panel on which component is drawn
    *
@@ -45,10 +115,10 @@ public abstract class Drawable implements AutoCloseable {
   /**
    * <p>Change the drawing panel on which this component is drawn</p>
    *
-   * <p>This method may also be used as a "hack" adjust the order in which drawing components are stacked. Drawable
-   * components are drawn on the screen in the order in which they are declared, oldest to newest, with the newest in front
-   * of the older components. (Re)setting the drawing panel of a component will pull it forward, in front of newer
-   * components, as though it had just been declared.</p>
+   * <p>Drawable components are drawn on the screen in the order in which they are declared, oldest to newest, with the
+   * newest in front of the older components. To adjust the order in which components are stacked, use
+   * {@link DrawingPanel#bringToFront(Drawable)}, {@link DrawingPanel#sendToBack(Drawable)} or
+   * {@link DrawingPanel#setZ(Drawable, int)}.</p>
    *
    * @param drawingPanel on which to draw
    */
@@ -57,6 +127,7 @@ public abstract class Drawable implements AutoCloseable {
       this.drawingPanel.remove(this);
     }
     this.drawingPanel = drawingPanel;
+    boundsValid = false;
     this.drawingPanel.add(this);
   }
 
@@ -90,6 +161,7 @@ public abstract class Drawable implements AutoCloseable {
    */
   public void setShape(Shape shape) throws DrawableException {
     this.shape = shape;
+    changed();
   }
 
   /**
@@ -98,7 +170,21 @@ public abstract class Drawable implements AutoCloseable {
    * @return Coordinates of bounding box origin
    */
   public Point2D getLocation() {
-    return new Point2D.Double(getShape().getBounds2D().getX(), getShape().getBounds2D().getY());
+    return getLocation(new Point2D.Double());
+  }
+
+  /**
+   * <p>Origin of bounding box</p>
+   *
+   * <p>Unlike {@link #getLocation()}, this method does not create a new point object, which makes it suitable for use
+   * in animation loops that are called many times per second.</p>
+   *
+   * @param location point in which to store the coordinates of the bounding box origin
+   * @return {@code location}
+   */
+  public Point2D getLocation(Point2D location) {
+    location.setLocation(getX(), getY());
+    return location;
   }
 
   /**
@@ -109,7 +195,7 @@ public abstract class Drawable implements AutoCloseable {
    * @see Rectangle#getX()
    */
   public double getX() {
-    return getShape().getBounds2D().getX();
+    return cachedBounds().getX();
   }
 
   /**
@@ -129,7 +215,7 @@ public abstract class Drawable implements AutoCloseable {
    * @see Rectangle#getY()
    */
   public double getY() {
-    return getShape().getBounds2D().getY();
+    return cachedBounds().getY();
   }
 
   /**
@@ -149,7 +235,7 @@ public abstract class Drawable implements AutoCloseable {
    * @see Rectangle#getWidth()
    */
   public double getWidth() {
-    return getShape().getBounds2D().getWidth();
+    return cachedBounds().getWidth();
   }
 
   /**
@@ -167,7 +253,7 @@ public abstract class Drawable implements AutoCloseable {
    * @see Rectangle#getHeight()
    */
   public double getHeight() {
-    return getShape().getBounds2D().getHeight();
+    return cachedBounds().getHeight();
   }
 
   /**
@@ -211,6 +297,7 @@ public abstract class Drawable implements AutoCloseable {
    */
   public void setStroke(Stroke stroke) {
     this.stroke = stroke;
+    changed();
   }
 
   /**
@@ -231,6 +318,7 @@ public abstract class Drawable implements AutoCloseable {
    */
   public void setStrokeColor(Color color) {
     this.strokeColor = color;
+    changed();
   }
 
   /**
@@ -251,27 +339,189 @@ public abstract class Drawable implements AutoCloseable {
    */
   public void setFillColor(Color color) {
     this.fillColor = color;
+    changed();
   }
 
   /**
    * <p>Drawing instructions for this component</p>
    *
-   * <p>Required by {@link DrawingPanel#draw(Graphics2D)} to render the drawable component.</p>
+   * <p>Required by {@link DrawingPanel#draw(Graphics2D)} to render the drawable component. The component is drawn as
+   * it was when it was last committed (or as it is now, if it has never been committed).</p>
    *
    * @param graphics context for drawing instructions
+   * @see #commit()
    */
   public void draw(Graphics2D graphics) {
-    if (getFillColor() != TRANSPARENT) {
-      graphics.setPaint(getFillColor());
-      graphics.fill(getShape());
+    State state = committed;
+    draw(graphics, state == null ? captureState() : state);
+  }
+
+  /**
+   * <p>Drawing instructions for a copy of this component's state</p>
+   *
+   * @param graphics context for drawing instructions
+   * @param state    to draw
+   * @see #captureState()
+   */
+  protected void draw(Graphics2D graphics, State state) {
+    if (state.fillColor != TRANSPARENT) {
+      graphics.setPaint(state.fillColor);
+      graphics.fill(state.shape);
+    }
+    if (state.stroke != NO_STROKE && state.strokeColor != TRANSPARENT) {
+      graphics.setPaint(state.strokeColor);
+      graphics.setStroke(state.stroke);
+      graphics.draw(state.shape);
+    }
+  }
+
+  /**
+   * <p>Write this component to an SVG document</p>
+   *
+   * <p>Used by {@link DrawingPanel#writeSvg(java.io.OutputStream, int, int)} to export the drawing panel as vector
+   * graphics. Like {@link #draw(Graphics2D)}, the component is written as it was when it was last committed.</p>
+   *
+   * @param svg document to which to write
+   * @throws IOException if the document cannot be written
+   */
+  public void writeSvg(SvgWriter svg) throws IOException {
+    State state = committed;
+    writeSvg(svg, state == null ? captureState() : state);
+  }
+
+  /**
+   * SVG instructions for a copy of this component's state
+   *
+   * @param svg   document to which to write
+   * @param state to write
+   * @throws IOException if the document cannot be written
+   * @see #draw(Graphics2D, State)
+   */
+  protected void writeSvg(SvgWriter svg, State state) throws IOException {
+    svg.writeShape(state.shape, state.fillColor, state.stroke == NO_STROKE ? null : state.stroke, state.strokeColor);
+  }
+
+  /**
+   * Copy the current state of this component
+   *
+   * @return An unchanging copy of everything needed to draw this component
+   */
+  protected State captureState() {
+    return new State(this);
+  }
+
+  /**
+   * <p>Publish the current state of this component to be drawn</p>
+   *
+   * <p>This method does not usually need to be called manually &mdash; the drawing panel commits all changed
+   * components at once (see {@link DrawingPanel#commit()}). Committing copies the state of the component, so that
+   * later changes are not drawn until they, too, are committed, and so that the component is never drawn partway
+   * through a change.</p>
+   */
+  public void commit() {
+    committed = captureState();
+  }
+
+  /**
+   * <p>Enclosing bounding box of all pixels that may be affected when this component is drawn, as of its most recent
+   * commit</p>
+   *
+   * <p>Used by the drawing panel to decide which components to draw and which regions to repaint. Unlike
+   * {@link #getRenderedBounds(Rectangle2D)}, this method only reads the committed state of the component, so it may be
+   * called while the component is being changed on another thread.</p>
+   *
+   * @param renderedBounds rectangle in which to store the bounding box
+   * @return {@code true} if the bounding box was stored, {@code false} if the component has never been committed (in
+   * which case {@code renderedBounds} is left unchanged)
+   * @see #commit()
+   */
+  public boolean getCommittedBounds(Rectangle2D renderedBounds) {
+    State state = committed;
+    if (state == null) {
+      return false;
     }
-    if (getStroke() != NO_STROKE && getStrokeColor() != TRANSPARENT) {
-      graphics.setPaint(getStrokeColor());
-      graphics.setStroke(getStroke());
-      graphics.draw(getShape());
+    renderedBounds.setRect(state.renderedBounds);
+    return true;
+  }
+
+  /**
+   * <p>Notify the drawing panel that this component has changed</p>
+   *
+   * <p>Subclasses must call this method after any change that affects how the component is drawn (its geometry,
+   * stroke or fill), so that the cached bounding box is recomputed and the drawing panel knows to repaint the region
+   * of the screen that the component used to cover, as well as the region it now covers.</p>
+   *
+   * <p>Changes made directly to the underlying {@link Shape} (e.g. via {@link #getShape()}) are not tracked, and
+   * should be followed by a call to this method.</p>
+   *
+   * @see DrawingPanel#damage(Drawable)
+   */
+  protected void changed() {
+    boundsValid = false;
+    if (drawingPanel != null) {
+      drawingPanel.damage(this);
     }
   }
 
+  /**
+   * <p>Notify the drawing panel that this component has been translated</p>
+   *
+   * <p>Subclasses should call this method instead of {@link #changed()} after a change that moves the geometry without
+   * otherwise altering it, so that the cached bounding box can be shifted rather than recomputed.</p>
+   *
+   * @param dx Change in X-coordinates
+   * @param dy Change in Y-coordinates
+   */
+  protected void translated(double dx, double dy) {
+    if (boundsValid) {
+      bounds.x += dx;
+      bounds.y += dy;
+    }
+    if (drawingPanel != null) {
+      drawingPanel.damage(this);
+    }
+  }
+
+  /**
+   * <p>Enclosing bounding box of all pixels that may be affected when this component is drawn</p>
+   *
+   * <p>This is the bounding box of the underlying {@link Shape}, expanded to include the width of the stroke and a
+   * margin for antialiasing.</p>
+   *
+   * @return Enclosing bounding box of the drawn component
+   */
+  public Rectangle2D getRenderedBounds() {
+    return getRenderedBounds(new Rectangle2D.Double());
+  }
+
+  /**
+   * <p>Enclosing bounding box of all pixels that may be affected when this component is drawn</p>
+   *
+   * <p>Unlike {@link #getRenderedBounds()}, this method does not create a new rectangle object.</p>
+   *
+   * @param renderedBounds rectangle in which to store the bounding box
+   * @return {@code renderedBounds}
+   */
+  public Rectangle2D getRenderedBounds(Rectangle2D renderedBounds) {
+    Rectangle2D bounds = cachedBounds();
+    double margin = 1;
+    Stroke stroke = getStroke();
+    if (stroke != NO_STROKE && getStrokeColor() != TRANSPARENT) {
+      if (stroke instanceof BasicStroke) {
+        BasicStroke basicStroke = (BasicStroke) stroke;
+        double join = basicStroke.getLineJoin() == BasicStroke.JOIN_MITER ? basicStroke.getMiterLimit() : 1;
+        margin += basicStroke.getLineWidth() / 2 * Math.max(Math.sqrt(2), join);
+      } else {
+        bounds = stroke.createStrokedShape(getShape()).getBounds2D();
+      }
+    }
+    renderedBounds.setRect(
+            bounds.getX() - margin, bounds.getY() - margin,
+            bounds.getWidth() + 2 * margin, bounds.getHeight() + 2 * margin
+    );
+    return renderedBounds;
+  }
+
   /**
    * Enclosing bounding box of the underlying {@link Shape}
    *
@@ -279,7 +529,36 @@ public abstract class Drawable implements AutoCloseable {
    * @see Shape#getBounds2D()
    */
   public Rectangle2D getBounds() {
-    return getShape().getBounds2D();
+    return getBounds(new Rectangle2D.Double());
+  }
+
+  /**
+   * <p>Enclosing bounding box of the underlying {@link Shape}</p>
+   *
+   * <p>Unlike {@link #getBounds()}, this method does not create a new rectangle object.</p>
+   *
+   * @param bounds rectangle in which to store the bounding box
+   * @return {@code bounds}
+   */
+  public Rectangle2D getBounds(Rectangle2D bounds) {
+    bounds.setRect(cachedBounds());
+    return bounds;
+  }
+
+  /**
+   * <p>Enclosing bounding box of the underlying {@link Shape}, computed only if the shape has changed since it was
+   * last requested</p>
+   *
+   * <p>The returned rectangle is shared and must not be modified.</p>
+   *
+   * @return Cached bounding box of the underlying {@link Shape}
+   */
+  private Rectangle2D cachedBounds() {
+    if (!boundsValid) {
+      bounds.setRect(getShape().getBounds2D());
+      boundsValid = true;
+    }
+    return bounds;
   }
 
   /**
@@ -34,6 +34,7 @@ abstract public class Drawable2D extends Drawable {
     public void setShape(Shape shape) throws DrawableException {
         if (shape instanceof RectangularShape) {
             this.shape = (RectangularShape) shape;
+            changed();
         } else {
             throw new DrawableException("Cannot convert a Shape to a RectangularShape");
         }
@@ -51,16 +52,20 @@ abstract public class Drawable2D extends Drawable {
     @Override
     public void setWidth(double width) {
         getShapeAsRectangularShape().setFrame(getX(), getY(), width, getHeight());
+        changed();
     }
 
     @Override
     public void setHeight(double height) {
         getShapeAsRectangularShape().setFrame(getX(), getY(), getWidth(), height);
+        changed();
     }
 
     @Override
     public void translate(double dx, double dy) {
-        getShapeAsRectangularShape().setFrame(getX() + dx, getY() + dy, getWidth(), getHeight());
+        RectangularShape frame = getShapeAsRectangularShape();
+        frame.setFrame(frame.getX() + dx, frame.getY() + dy, frame.getWidth(), frame.getHeight());
+        translated(dx, dy);
     }
 
     @Override
@@ -89,6 +94,7 @@ abstract public class Drawable2D extends Drawable {
      */
     public void setFrame(double x, double y, double width, double height) {
         shape.setFrame(x, y, width, height);
+        changed();
     }
 
     /**
@@ -1,12 +1,20 @@
 package org.gannacademy.cdf.graphics;
 
 import org.gannacademy.cdf.graphics.ui.DrawingPanel;
+import org.gannacademy.cdf.graphics.ui.SvgWriter;
 
-import javax.imageio.ImageIO;
+import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Render an image file
@@ -14,10 +22,140 @@ import java.io.IOException;
  * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
  */
 public class Image extends Drawable {
-  private BufferedImage original, active;
+  /**
+   * <p>Copy of the image data rescaled to a particular size</p>
+   *
+   * <p>Rescaling is deferred until the copy is first drawn, so that changing both the width and the height of an image
+   * (or changing its size several times between frames) only rescales the image once.</p>
+   *
+   * <p>Rescaled copies are shared by every image object that draws the same image data at the same size (e.g. many
+   * images loaded from the same resource, see {@link ImageCache}), so that there is only one rescaled copy, and one
+   * copy in video memory, of each.</p>
+   */
+  private static class Rescaled {
+    final BufferedImage original;
+    final int width, height;
+    private volatile BufferedImage image = null;
+    private volatile AcceleratedImage accelerated = null;
+    private boolean flushed = false;
+
+    /**
+     * Number of image objects currently using this copy (guarded by the lock of {@link #shared})
+     */
+    private int users = 0;
+
+    Rescaled(BufferedImage original, int width, int height) {
+      this.original = original;
+      this.width = width;
+      this.height = height;
+    }
+
+    boolean matches(BufferedImage original, int width, int height) {
+      return this.original == original && this.width == width && this.height == height;
+    }
+
+    BufferedImage get() {
+      BufferedImage result = image;
+      if (result == null) {
+        synchronized (this) {
+          if (image == null) {
+            image = rescale();
+          }
+          result = image;
+        }
+      }
+      return result;
+    }
+
+    private BufferedImage rescale() {
+      if (width == original.getWidth() && height == original.getHeight()) {
+        return original;
+      }
+      BufferedImage result = CompatibleImage.create(width, height, original.getTransparency());
+      Graphics2D graphics = result.createGraphics();
+      graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+      graphics.drawImage(original, 0, 0, width, height, null);
+      graphics.dispose();
+      return result;
+    }
+
+    private AcceleratedImage accelerated() {
+      AcceleratedImage result = accelerated;
+      if (result == null) {
+        synchronized (this) {
+          if (accelerated == null && !flushed) {
+            accelerated = new AcceleratedImage(get());
+          }
+          result = accelerated;
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Draw the rescaled image (without locking, except to rescale it the first time, so that several tiles can draw it
+     * at once)
+     */
+    void draw(Graphics2D graphics, int x, int y, boolean accelerate) {
+      AcceleratedImage copy = accelerate ? accelerated() : null;
+      if (copy != null) {
+        copy.draw(graphics, x, y);
+      } else {
+        graphics.drawImage(get(), x, y, null);
+      }
+    }
+
+    /**
+     * Release the copy in video memory (if any) now that no image object uses this rescaled copy, rather than waiting
+     * for it to be garbage collected (it may still be drawn, from main memory, until the replacement is committed)
+     */
+    synchronized void flush() {
+      flushed = true;
+      if (accelerated != null) {
+        accelerated.flush();
+      }
+    }
+  }
+
+  /**
+   * Copy of the state of an image object
+   */
+  private static class ImageState extends State {
+    final BufferedImage original;
+    final Rescaled rescaled;
+    final int x, y, width, height;
+    final boolean continuousScaling, accelerated;
+
+    ImageState(Image component) {
+      super(component);
+      original = component.original;
+      x = (int) component.x;
+      y = (int) component.y;
+      width = (int) component.width;
+      height = (int) component.height;
+      continuousScaling = component.continuousScaling;
+      accelerated = component.accelerated;
+      rescaled = original == null || width <= 0 || height <= 0 || continuousScaling ? null : component.getRescaled();
+    }
+  }
+
+  /**
+   * Rescaled copies in use, by the image data that they rescale
+   */
+  private static final Map<BufferedImage, List<WeakReference<Rescaled>>> shared = new WeakHashMap<>();
+
+  private BufferedImage original;
+  private Rescaled rescaled = null;
+  private boolean continuousScaling = false, accelerated = false, sharedOriginal = false;
   private String path;
   private double x, y, width, height;
 
+  /**
+   * Completion of the most recently requested image resource
+   */
+  private volatile CompletableFuture<Image> loading = CompletableFuture.completedFuture(this);
+
   /**
    * <p>Construct a new image object</p>
    *
@@ -49,12 +187,52 @@ public class Image extends Drawable {
     }
   }
 
+  private Image(double x, double y, DrawingPanel drawingPanel) {
+    setX(x);
+    setY(y);
+    setDrawingPanel(drawingPanel);
+  }
+
   /**
-   * Underlying image data
+   * <p>Construct a new image object without waiting for the image resource to load</p>
+   *
+   * <p>The image resource is decoded on a background thread, so that a scene can start to be drawn while its images
+   * load. Until the resource has loaded, the image object has no image data: it is drawn as an empty frame (its stroke
+   * and fill), sized as set by {@link #setWidth(double)} and {@link #setHeight(double)} (or not drawn at all if no size
+   * has been set). Once loaded, the image is drawn at that size (or at its original size if no size was set).</p>
+   *
+   * @param path         to the image resource
+   * @param x            coordinate of image origin
+   * @param y            coordinate of image origin
+   * @param drawingPanel on which to draw
+   * @return New image object, whose image resource is loading
+   * @see #getLoading()
+   */
+  public static Image load(String path, double x, double y, DrawingPanel drawingPanel) {
+    Image image = new Image(x, y, drawingPanel);
+    image.setImageAsync(path);
+    return image;
+  }
+
+  /**
+   * <p>Underlying image data</p>
+   *
+   * <p>Image data loaded from a resource is shared with every other image object loaded from the same resource (see
+   * {@link ImageCache}) until it is requested here: the first request makes a private copy of the image data, so that
+   * drawing on the returned image changes only this image object.</p>
    *
    * @return Underlying {@link BufferedImage} data
    */
   public BufferedImage getImage() {
+    if (sharedOriginal) {
+      BufferedImage copy = CompatibleImage.create(original.getWidth(), original.getHeight(),
+              original.getTransparency());
+      Graphics2D graphics = copy.createGraphics();
+      graphics.setComposite(AlphaComposite.Src);
+      graphics.drawImage(original, 0, 0, null);
+      graphics.dispose();
+      setImage(copy);
+    }
     return original;
   }
 
@@ -63,12 +241,95 @@ public class Image extends Drawable {
    *
    * <p>Replacing the underlying image data leaves other characteristics (fill, stroke, position) unchanged.</p>
    *
-   * @param path to image resource
+   * <p>The resource is only decoded the first time that it is used: image objects loaded from the same resource share
+   * the same image data.</p>
+   *
+   * @param path to image resource, resolved relative to the class of this image object (see
+   *             {@link Class#getResource(String)})
    * @throws IOException if the image resource cannot be accessed
+   * @see ImageCache
    */
   public void setImage(String path) throws IOException {
-    this.path = path;
-    setImage(ImageIO.read(getClass().getResource(path)));
+    BufferedImage image = ImageCache.get(getClass(), path);
+    synchronized (this) {
+      loading = CompletableFuture.completedFuture(this);
+      this.path = path;
+      setSharedImage(image);
+    }
+  }
+
+  /**
+   * <p>Replace the underlying {@link BufferedImage} data without waiting for the image resource to load</p>
+   *
+   * <p>The image resource is decoded on a background thread, and the current image data continues to be drawn until
+   * it has loaded. If another image is requested before this one has loaded, this one is discarded when it loads.</p>
+   *
+   * <p>The loaded image data replaces the current image data on the event dispatch thread, which then completes the
+   * returned future: do not wait for the future on the event dispatch thread (e.g. in
+   * {@link org.gannacademy.cdf.graphics.ui.AppWindow#setup()}), but attach the work that needs the image to it (e.g.
+   * with {@link CompletableFuture#thenAccept(java.util.function.Consumer)}).</p>
+   *
+   * @param path to image resource, resolved relative to the class of this image object (see
+   *             {@link Class#getResource(String)})
+   * @return Future completed with this image object once the image resource has loaded (or completed exceptionally if
+   * it could not be loaded)
+   * @see ImageCache#getAsync(Class, String)
+   */
+  public CompletableFuture<Image> setImageAsync(String path) {
+    CompletableFuture<Image> future = new CompletableFuture<>();
+    synchronized (this) {
+      loading = future;
+    }
+    ImageCache.getAsync(getClass(), path).whenComplete((image, error) ->
+            SwingUtilities.invokeLater(() -> loaded(future, path, image, error)));
+    return future;
+  }
+
+  /**
+   * Replace the underlying image data with an asynchronously loaded image resource, unless another image has been
+   * requested since, and complete its future
+   *
+   * @param future returned by {@link #setImageAsync(String)}
+   * @param path   to image resource
+   * @param image  data loaded
+   * @param error  if the image resource could not be loaded
+   */
+  private void loaded(CompletableFuture<Image> future, String path, BufferedImage image, Throwable error) {
+    if (error != null) {
+      future.completeExceptionally(error);
+      return;
+    }
+    DrawingPanel drawingPanel = getDrawingPanel();
+    // don't let the drawing panel commit this image half-updated, or another request slip in after the check
+    synchronized (drawingPanel == null ? this : drawingPanel) {
+      synchronized (this) {
+        if (loading == future) {
+          this.path = path;
+          setSharedImage(image);
+        }
+      }
+    }
+    future.complete(this);
+  }
+
+  /**
+   * Completion of the most recently requested image resource
+   *
+   * @return Future completed with this image object once the most recently requested image resource has loaded
+   * (already complete if the image was not loaded asynchronously)
+   * @see #setImageAsync(String)
+   */
+  public CompletableFuture<Image> getLoading() {
+    return loading;
+  }
+
+  /**
+   * Has the most recently requested image resource loaded?
+   *
+   * @return {@code true} if the image resource has loaded (or failed to load), {@code false} if it is still loading
+   */
+  public boolean isLoaded() {
+    return loading.isDone();
   }
 
   /**
@@ -76,19 +337,31 @@ public class Image extends Drawable {
    *
    * <p>Replacing the underlying image data leaves other characteristics (fill, stroke, position) unchanged.</p>
    *
+   * <p>The image data is used as-is: image data in a pixel format that does not match the screen draws more slowly,
+   * and may be converted first with {@link CompatibleImage#convert(BufferedImage)}.</p>
+   *
    * @param image data
    */
   public void setImage(BufferedImage image) {
-    original = image;
-
     // only set width and height to match image if loading initial image
-    if (active == null && original != null) {
-      setWidth(original.getWidth());
-      setHeight(original.getHeight());
-      active = original;
-    } else {
-      rescaleImage();
+    if (original == null && image != null && width == 0 && height == 0) {
+      width = image.getWidth();
+      height = image.getHeight();
     }
+    original = image;
+    sharedOriginal = false;
+    changed();
+  }
+
+  /**
+   * Replace the underlying image data with image data shared through the {@link ImageCache}, to be copied before it is
+   * handed out by {@link #getImage()}
+   *
+   * @param image data
+   */
+  private void setSharedImage(BufferedImage image) {
+    setImage(image);
+    sharedOriginal = image != null;
   }
 
   /**
@@ -101,17 +374,141 @@ public class Image extends Drawable {
   }
 
   /**
-   * Rescale the underlying image data to match current width and height field values
+   * <p>Rescale the underlying image data to match current width and height field values</p>
+   *
+   * <p>Rescaling is deferred until the image is next drawn: this method discards the current rescaled copy of the
+   * image data, if any.</p>
    */
   protected void rescaleImage() {
-    if (getWidth() > 0 && getHeight() > 0) {
-      active = new BufferedImage((int) getWidth(), (int) getHeight(), original.getType());
-      Graphics2D graphics = active.createGraphics();
-      graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-      graphics.drawImage(original, 0, 0, (int) getWidth(), (int) getHeight(), null);
-      graphics.dispose();
+    discardRescaled();
+    changed();
+  }
+
+  /**
+   * Copy of the underlying image data rescaled to the current width and height, reused for as long as the image data,
+   * width and height are unchanged
+   *
+   * @return Rescaled copy of the image data (which may not have been rescaled yet)
+   */
+  private Rescaled getRescaled() {
+    if (rescaled == null || !rescaled.matches(original, (int) width, (int) height)) {
+      discardRescaled();
+      rescaled = acquireRescaled(original, (int) width, (int) height);
+    }
+    return rescaled;
+  }
+
+  /**
+   * Discard the current rescaled copy of the image data (if any), releasing its copy in video memory if no other image
+   * object uses it
+   */
+  private void discardRescaled() {
+    if (rescaled != null) {
+      releaseRescaled(rescaled);
+      rescaled = null;
+    }
+  }
+
+  /**
+   * Shared rescaled copy of image data, created if no other image object is using one of the same size
+   *
+   * @param original image data
+   * @param width    of the copy
+   * @param height   of the copy
+   * @return Rescaled copy, which must be released once it is no longer used
+   */
+  private static Rescaled acquireRescaled(BufferedImage original, int width, int height) {
+    synchronized (shared) {
+      List<WeakReference<Rescaled>> copies = shared.computeIfAbsent(original, key -> new ArrayList<>());
+      Rescaled result = null;
+      for (Iterator<WeakReference<Rescaled>> i = copies.iterator(); i.hasNext(); ) {
+        Rescaled copy = i.next().get();
+        if (copy == null) {
+          i.remove();
+        } else if (copy.matches(original, width, height)) {
+          result = copy;
+        }
+      }
+      if (result == null) {
+        result = new Rescaled(original, width, height);
+        copies.add(new WeakReference<>(result));
+      }
+      result.users++;
+      return result;
+    }
+  }
+
+  /**
+   * Stop using a shared rescaled copy of image data, flushing it if no other image object uses it
+   *
+   * @param copy to release
+   */
+  private static void releaseRescaled(Rescaled copy) {
+    synchronized (shared) {
+      if (--copy.users > 0) {
+        return;
+      }
+      List<WeakReference<Rescaled>> copies = shared.get(copy.original);
+      if (copies != null) {
+        copies.removeIf(reference -> reference.get() == null || reference.get() == copy);
+        if (copies.isEmpty()) {
+          shared.remove(copy.original);
+        }
+      }
     }
+    copy.flush();
+  }
+
+  /**
+   * Is the image scaled as it is drawn?
+   *
+   * @return {@code true} if the image is scaled as it is drawn, {@code false} if a rescaled copy is drawn
+   * @see #setContinuousScaling(boolean)
+   */
+  public boolean isContinuousScaling() {
+    return continuousScaling;
+  }
+
+  /**
+   * <p>Choose whether to scale the image as it is drawn</p>
+   *
+   * <p>By default, a high-quality (bicubic) rescaled copy of the image data is made whenever the image is drawn at a
+   * new size, and that copy is drawn until the size changes again. For an image whose size changes continuously (e.g.
+   * an animated zoom), making a new copy every frame is wasteful: with continuous scaling, the original image data is
+   * scaled by the graphics context as it is drawn, at somewhat lower (bilinear) quality.</p>
+   *
+   * @param continuousScaling {@code true} to scale the image as it is drawn, {@code false} to draw a rescaled copy
+   */
+  public void setContinuousScaling(boolean continuousScaling) {
+    this.continuousScaling = continuousScaling;
+    discardRescaled();
+    changed();
+  }
+
+  /**
+   * Is a copy of the image kept in video memory?
+   *
+   * @return {@code true} if the image is drawn from video memory when possible, {@code false} otherwise
+   * @see #setAccelerated(boolean)
+   */
+  public boolean isAccelerated() {
+    return accelerated;
+  }
+
+  /**
+   * <p>Choose whether to keep a copy of the image in video memory</p>
+   *
+   * <p>Java2D usually caches images in video memory on its own, but only after they have been drawn a few times
+   * unchanged, and not on every platform. An accelerated image is explicitly copied to video memory (as a {@link
+   * java.awt.image.VolatileImage}) the first time it is drawn on screen, and restored automatically if the copy is
+   * lost. Acceleration has no effect on images drawn off-screen (e.g. by {@link DrawingPanel#saveAs(String)}) or with
+   * continuous scaling.</p>
+   *
+   * @param accelerated {@code true} to draw the image from video memory, {@code false} otherwise
+   */
+  public void setAccelerated(boolean accelerated) {
+    this.accelerated = accelerated;
+    changed();
   }
 
   @Override
@@ -127,6 +524,7 @@ public class Image extends Drawable {
   @Override
   public void setX(double x) {
     this.x = x;
+    changed();
   }
 
   @Override
@@ -137,6 +535,7 @@ public class Image extends Drawable {
   @Override
   public void setY(double y) {
     this.y = y;
+    changed();
   }
 
   @Override
@@ -146,7 +545,7 @@ public class Image extends Drawable {
 
   public void setWidth(double width) {
     this.width = width;
-    rescaleImage();
+    changed();
   }
 
   @Override
@@ -156,32 +555,63 @@ public class Image extends Drawable {
 
   public void setHeight(double height) {
     this.height = height;
-    rescaleImage();
+    changed();
   }
 
   @Override
   public void translate(double dx, double dy) {
-    setX(x + dx);
-    setY(y + dy);
+    x += dx;
+    y += dy;
+    translated(dx, dy);
   }
 
   @Override
   public void setLocation(double x, double y) {
-    setX(x);
-    setY(y);
+    double dx = x - this.x, dy = y - this.y;
+    this.x = x;
+    this.y = y;
+    translated(dx, dy);
   }
 
   @Override
-  public void draw(Graphics2D graphics2D) {
-    if (getFillColor() != TRANSPARENT) {
-      graphics2D.setPaint(getFillColor());
-      graphics2D.fill(getShape());
+  protected State captureState() {
+    return new ImageState(this);
+  }
+
+  @Override
+  protected void draw(Graphics2D graphics2D, State state) {
+    ImageState image = (ImageState) state;
+    if (image.fillColor != TRANSPARENT) {
+      graphics2D.setPaint(image.fillColor);
+      graphics2D.fill(image.shape);
+    }
+    if (image.rescaled != null) {
+      image.rescaled.draw(graphics2D, image.x, image.y, image.accelerated);
+    } else if (image.continuousScaling && image.original != null && image.width > 0 && image.height > 0) {
+      Object interpolation = graphics2D.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+      graphics2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics2D.drawImage(image.original, image.x, image.y, image.width, image.height, null);
+      if (interpolation != null) {
+        graphics2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+      }
     }
-    graphics2D.drawImage(active, (int) x, (int) y, null);
-    if (getStroke() != NO_STROKE && getStrokeColor() != TRANSPARENT) {
-      graphics2D.setStroke(getStroke());
-      graphics2D.setPaint(getStrokeColor());
-      graphics2D.draw(getShape());
+    if (image.stroke != NO_STROKE && image.strokeColor != TRANSPARENT) {
+      graphics2D.setStroke(image.stroke);
+      graphics2D.setPaint(image.strokeColor);
+      graphics2D.draw(image.shape);
+    }
+  }
+
+  /**
+   * The image is embedded in the SVG document at full resolution, and scaled by the SVG viewer
+   */
+  @Override
+  protected void writeSvg(SvgWriter svg, State state) throws IOException {
+    ImageState image = (ImageState) state;
+    svg.writeShape(image.shape, image.fillColor, null, null);
+    if (image.original != null) {
+      svg.writeImage(image.original, image.x, image.y, image.width, image.height);
     }
+    svg.writeShape(image.shape, null, image.stroke == NO_STROKE ? null : image.stroke, image.strokeColor);
   }
 }
@@ -0,0 +1,323 @@
+package org.gannacademy.cdf.graphics;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>Decoded image resources, shared by every {@link Image} that uses them</p>
+ *
+ * <p>Decoding an image file is slow, and each decoded copy takes up as much memory as the image has pixels, so images
+ * loaded from the same resource share a single decoded {@link BufferedImage}. Resource paths are resolved like
+ * {@link Class#getResource(String)}, relative to the package of a class (unless they start with {@code /}), and images
+ * are cached by the resource that their path resolves to. The cache holds at most {@link
+ * #getBudget()} bytes of image data, discarding the least recently used images when it is full (images discarded from
+ * the cache remain in use by any {@link Image} objects that already refer to them).</p>
+ *
+ * <p>Images are converted to a compatible pixel format as they are decoded, so that they can be drawn quickly.</p>
+ *
+ * <p>Images may also be decoded asynchronously, on a pool of background threads (see {@link #getAsync(String)}).</p>
+ *
+ * <p>Because cached images are shared, they should be treated as read-only: to draw on an image, draw on a copy of
+ * it.</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ */
+public final class ImageCache {
+
+  /**
+   * Defaults to caching up to 64 MB of image data
+   */
+  public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+  private static long budget = DEFAULT_BUDGET, size = 0;
+  private static long hits = 0, misses = 0, evictions = 0;
+
+  /**
+   * Decoded images, in least- to most-recently used order
+   */
+  private static final LinkedHashMap<String, BufferedImage> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Images being decoded asynchronously, by resource
+   */
+  private static final Map<String, CompletableFuture<BufferedImage>> pending = new HashMap<>();
+
+  private static ExecutorService loader = null;
+
+  private ImageCache() {
+  }
+
+  /**
+   * <p>Decoded image resource</p>
+   *
+   * <p>The resource is only decoded (and converted to a compatible pixel format) if it is not already cached.</p>
+   *
+   * @param path to the image resource, resolved relative to the {@link Image} class (a path starting with {@code /}
+   *             is relative to the root of the resources directory)
+   * @return Decoded image, or {@code null} if the resource is not in a recognized image format
+   * @throws IOException if the image resource cannot be accessed
+   * @see #get(Class, String)
+   */
+  public static BufferedImage get(String path) throws IOException {
+    return get(Image.class, path);
+  }
+
+  /**
+   * <p>Decoded image resource, resolved relative to a particular class</p>
+   *
+   * <p>The resource is only decoded (and converted to a compatible pixel format) if it is not already cached.</p>
+   *
+   * @param context class relative to which to resolve {@code path} (see {@link Class#getResource(String)})
+   * @param path    to the image resource (a path starting with {@code /} is relative to the root of the resources
+   *                directory)
+   * @return Decoded image, or {@code null} if the resource is not in a recognized image format
+   * @throws IOException              if the image resource cannot be accessed
+   * @throws IllegalArgumentException if there is no such resource
+   */
+  public static BufferedImage get(Class<?> context, String path) throws IOException {
+    return get(resolve(context, path));
+  }
+
+  private static BufferedImage get(URL resource) throws IOException {
+    String key = resource.toString();
+    synchronized (cache) {
+      BufferedImage image = cache.get(key);
+      if (image != null) {
+        hits++;
+        return image;
+      }
+      misses++;
+    }
+    BufferedImage image = CompatibleImage.convert(ImageIO.read(resource));
+    if (image != null) {
+      synchronized (cache) {
+        BufferedImage cached = cache.get(key);
+        if (cached != null) {
+          // decoded by another thread in the meantime
+          return cached;
+        }
+        long bytes = sizeOf(image);
+        if (bytes <= budget) {
+          cache.put(key, image);
+          size += bytes;
+          trim();
+        }
+      }
+    }
+    return image;
+  }
+
+  /**
+   * <p>Decoded image resource, decoded on a background thread</p>
+   *
+   * <p>If the image is already cached, the returned future is already complete. If the image is already being decoded,
+   * the returned future completes when that decoding does (each resource is only decoded once, no matter how many
+   * times it is requested).</p>
+   *
+   * @param path to the image resource, resolved relative to the {@link Image} class (a path starting with {@code /}
+   *             is relative to the root of the resources directory)
+   * @return Future completed with the decoded image (or {@code null} if the resource is not in a recognized image
+   * format), or completed exceptionally with an {@link UncheckedIOException} if the image resource cannot be accessed
+   * @see #getAsync(Class, String)
+   */
+  public static CompletableFuture<BufferedImage> getAsync(String path) {
+    return getAsync(Image.class, path);
+  }
+
+  /**
+   * <p>Decoded image resource, resolved relative to a particular class and decoded on a background thread</p>
+   *
+   * @param context class relative to which to resolve {@code path} (see {@link Class#getResource(String)})
+   * @param path    to the image resource (a path starting with {@code /} is relative to the root of the resources
+   *                directory)
+   * @return Future completed as by {@link #getAsync(String)}, or completed exceptionally with an
+   * {@link IllegalArgumentException} if there is no such resource
+   */
+  public static CompletableFuture<BufferedImage> getAsync(Class<?> context, String path) {
+    URL resource;
+    try {
+      resource = resolve(context, path);
+    } catch (IllegalArgumentException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    String key = resource.toString();
+    synchronized (cache) {
+      BufferedImage image = cache.get(key);
+      if (image != null) {
+        hits++;
+        return CompletableFuture.completedFuture(image);
+      }
+      CompletableFuture<BufferedImage> future = pending.get(key);
+      if (future == null) {
+        future = CompletableFuture.supplyAsync(() -> {
+          try {
+            return get(resource);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }, loader());
+        pending.put(key, future);
+        future.whenComplete((result, error) -> {
+          synchronized (cache) {
+            pending.remove(key);
+          }
+        });
+      }
+      return future;
+    }
+  }
+
+  /**
+   * Locate an image resource
+   *
+   * @param context class relative to which to resolve {@code path}
+   * @param path    to the image resource
+   * @return Location of the resource
+   * @throws IllegalArgumentException if there is no such resource
+   */
+  private static URL resolve(Class<?> context, String path) {
+    URL resource = context.getResource(path);
+    if (resource == null) {
+      throw new IllegalArgumentException("Image resource not found: " + path);
+    }
+    return resource;
+  }
+
+  /**
+   * Background threads on which images are decoded (created when first needed)
+   *
+   * @return Executor for decoding images
+   */
+  private static ExecutorService loader() {
+    if (loader == null) {
+      loader = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+        Thread thread = new Thread(task, "ImageCache loader");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return loader;
+  }
+
+  /**
+   * Approximate memory used by the pixels of an image
+   *
+   * @param image to measure
+   * @return Size of the image data in bytes
+   */
+  static long sizeOf(BufferedImage image) {
+    DataBuffer data = image.getRaster().getDataBuffer();
+    return (long) data.getSize() * data.getNumBanks() * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+  }
+
+  private static void trim() {
+    Iterator<BufferedImage> eldest = cache.values().iterator();
+    while (size > budget && eldest.hasNext()) {
+      size -= sizeOf(eldest.next());
+      eldest.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Maximum amount of image data cached
+   *
+   * @return Budget in bytes
+   */
+  public static long getBudget() {
+    synchronized (cache) {
+      return budget;
+    }
+  }
+
+  /**
+   * Set the maximum amount of image data cached (discarding the least recently used images if necessary)
+   *
+   * @param budget in bytes (must not be negative)
+   */
+  public static void setBudget(long budget) {
+    if (budget < 0) {
+      throw new IllegalArgumentException("Cache budget must not be negative");
+    }
+    synchronized (cache) {
+      ImageCache.budget = budget;
+      trim();
+    }
+  }
+
+  /**
+   * Amount of image data currently cached
+   *
+   * @return Size of cached image data in bytes
+   */
+  public static long getSize() {
+    synchronized (cache) {
+      return size;
+    }
+  }
+
+  /**
+   * Number of images currently cached
+   *
+   * @return Number of images currently cached
+   */
+  public static int getImageCount() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  /**
+   * Number of requests for an image that was already cached
+   *
+   * @return Number of cache hits since the cache was last cleared
+   */
+  public static long getHitCount() {
+    synchronized (cache) {
+      return hits;
+    }
+  }
+
+  /**
+   * Number of requests for an image that had to be decoded
+   *
+   * @return Number of cache misses since the cache was last cleared
+   */
+  public static long getMissCount() {
+    synchronized (cache) {
+      return misses;
+    }
+  }
+
+  /**
+   * Number of images discarded to stay within budget
+   *
+   * @return Number of cache evictions since the cache was last cleared
+   */
+  public static long getEvictionCount() {
+    synchronized (cache) {
+      return evictions;
+    }
+  }
+
+  /**
+   * Discard all cached images (and reset the hit, miss and eviction counts)
+   */
+  public static void clear() {
+    synchronized (cache) {
+      cache.clear();
+      size = hits = misses = evictions = 0;
+    }
+  }
+}
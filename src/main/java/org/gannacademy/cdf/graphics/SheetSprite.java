@@ -0,0 +1,213 @@
+package org.gannacademy.cdf.graphics;
+
+import org.gannacademy.cdf.graphics.ui.DrawingPanel;
+import org.gannacademy.cdf.graphics.ui.SvgWriter;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * <p>Draw a named region of a {@link SpriteSheet}</p>
+ *
+ * <p>A sprite draws one region of its sheet at a time, so that an animation is a matter of choosing the region to draw
+ * in each frame (e.g. with {@link #setRegion(String)}), rather than of loading, adding and removing separate images.
+ * The region is drawn directly from the shared sheet, so sprites take up no image memory of their own.</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ */
+public class SheetSprite extends Drawable {
+  /**
+   * Copy of the state of a sprite
+   */
+  private static class SpriteState extends State {
+    final BufferedImage image;
+    final Rectangle region;
+    final int x, y, width, height;
+
+    SpriteState(SheetSprite component) {
+      super(component);
+      image = component.sheet.getImage();
+      region = component.region;
+      x = (int) component.x;
+      y = (int) component.y;
+      width = (int) component.width;
+      height = (int) component.height;
+    }
+  }
+
+  private final SpriteSheet sheet;
+  private String name;
+  private Rectangle region;
+  private double x, y, width, height;
+
+  /**
+   * <p>Construct a new sprite</p>
+   *
+   * <p>Initially, the width and height of the sprite match the dimensions of the region. Choosing a different region
+   * later does not change the size of the sprite.</p>
+   *
+   * @param sheet        from which to draw
+   * @param region       name of the region of the sheet to draw
+   * @param x            coordinate of sprite origin
+   * @param y            coordinate of sprite origin
+   * @param drawingPanel on which to draw
+   * @throws IllegalArgumentException if {@code region} is not defined in {@code sheet}
+   */
+  public SheetSprite(SpriteSheet sheet, String region, double x, double y, DrawingPanel drawingPanel) {
+    this.sheet = sheet;
+    setRegion(region);
+    width = this.region.getWidth();
+    height = this.region.getHeight();
+    setX(x);
+    setY(y);
+    setDrawingPanel(drawingPanel);
+  }
+
+  /**
+   * Sprite sheet from which this sprite is drawn
+   *
+   * @return Sprite sheet
+   */
+  public SpriteSheet getSheet() {
+    return sheet;
+  }
+
+  /**
+   * Name of the region of the sheet currently drawn
+   *
+   * @return Region name
+   */
+  public String getRegion() {
+    return name;
+  }
+
+  /**
+   * Choose the region of the sheet to draw
+   *
+   * @param name of the region
+   * @throws IllegalArgumentException if {@code name} is not defined in the sheet
+   */
+  public void setRegion(String name) {
+    Rectangle region = sheet.region(name);
+    if (region == null) {
+      throw new IllegalArgumentException("Region " + name + " is not defined in the sprite sheet");
+    }
+    this.name = name;
+    this.region = region;
+    changed();
+  }
+
+  @Override
+  public Shape getShape() {
+    return new Rectangle2D.Double(x, y, width, height);
+  }
+
+  @Override
+  public double getX() {
+    return x;
+  }
+
+  @Override
+  public void setX(double x) {
+    this.x = x;
+    changed();
+  }
+
+  @Override
+  public double getY() {
+    return y;
+  }
+
+  @Override
+  public void setY(double y) {
+    this.y = y;
+    changed();
+  }
+
+  @Override
+  public double getWidth() {
+    return width;
+  }
+
+  /**
+   * Scales the region horizontally to match desired width
+   *
+   * @param width to use
+   */
+  @Override
+  public void setWidth(double width) {
+    this.width = width;
+    changed();
+  }
+
+  @Override
+  public double getHeight() {
+    return height;
+  }
+
+  /**
+   * Scales the region vertically to match desired height
+   *
+   * @param height to use
+   */
+  @Override
+  public void setHeight(double height) {
+    this.height = height;
+    changed();
+  }
+
+  @Override
+  public void translate(double dx, double dy) {
+    x += dx;
+    y += dy;
+    translated(dx, dy);
+  }
+
+  @Override
+  public void setLocation(double x, double y) {
+    double dx = x - this.x, dy = y - this.y;
+    this.x = x;
+    this.y = y;
+    translated(dx, dy);
+  }
+
+  @Override
+  protected State captureState() {
+    return new SpriteState(this);
+  }
+
+  @Override
+  protected void draw(Graphics2D graphics, State state) {
+    SpriteState sprite = (SpriteState) state;
+    if (sprite.fillColor != TRANSPARENT) {
+      graphics.setPaint(sprite.fillColor);
+      graphics.fill(sprite.shape);
+    }
+    if (sprite.width > 0 && sprite.height > 0) {
+      Rectangle region = sprite.region;
+      graphics.drawImage(sprite.image,
+              sprite.x, sprite.y, sprite.x + sprite.width, sprite.y + sprite.height,
+              region.x, region.y, region.x + region.width, region.y + region.height,
+              null);
+    }
+    if (sprite.stroke != NO_STROKE && sprite.strokeColor != TRANSPARENT) {
+      graphics.setStroke(sprite.stroke);
+      graphics.setPaint(sprite.strokeColor);
+      graphics.draw(sprite.shape);
+    }
+  }
+
+  /**
+   * The whole sprite sheet is embedded in the SVG document (once, however many sprites share it), and the region is
+   * cropped and scaled by the SVG viewer
+   */
+  @Override
+  protected void writeSvg(SvgWriter svg, State state) throws IOException {
+    SpriteState sprite = (SpriteState) state;
+    svg.writeShape(sprite.shape, sprite.fillColor, null, null);
+    svg.writeImage(sprite.image, sprite.region, sprite.x, sprite.y, sprite.width, sprite.height);
+    svg.writeShape(sprite.shape, null, sprite.stroke == NO_STROKE ? null : sprite.stroke, sprite.strokeColor);
+  }
+}
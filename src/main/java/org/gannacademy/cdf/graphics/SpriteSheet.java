@@ -0,0 +1,144 @@
+package org.gannacademy.cdf.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>A single image containing many named sub-images (a sprite sheet or texture atlas)</p>
+ *
+ * <p>Animations are often made up of many small frames. Rather than loading each frame from its own file, all of the
+ * frames can be stored in a single sheet, and the region of the sheet occupied by each frame given a name. The sheet
+ * is only loaded (and held in memory) once, no matter how many frames it contains or how many {@link SheetSprite}
+ * objects draw from it, and animating a sprite is just a matter of choosing which region of the sheet to draw.</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ * @see SheetSprite
+ */
+public class SpriteSheet {
+  private final BufferedImage image;
+  private final String path;
+
+  /**
+   * Regions of the sheet, by name, in the order in which they were defined
+   */
+  private final Map<String, Rectangle> regions = new LinkedHashMap<>();
+
+  /**
+   * <p>Load a sprite sheet from an image resource</p>
+   *
+   * @param path to the image resource, resolved relative to the class of this sprite sheet (see
+   *             {@link Class#getResource(String)})
+   * @throws IOException if the image resource cannot be accessed or is not in a recognized image format
+   * @see ImageCache
+   */
+  public SpriteSheet(String path) throws IOException {
+    this.path = path;
+    image = ImageCache.get(getClass(), path);
+    if (image == null) {
+      throw new IOException("Unrecognized image format: " + path);
+    }
+  }
+
+  /**
+   * Construct a sprite sheet from image data
+   *
+   * @param image data
+   */
+  public SpriteSheet(BufferedImage image) {
+    this.path = null;
+    this.image = image;
+  }
+
+  /**
+   * Underlying image data
+   *
+   * @return Underlying {@link BufferedImage} data of the entire sheet
+   */
+  public BufferedImage getImage() {
+    return image;
+  }
+
+  /**
+   * Path to image resource
+   *
+   * @return Path to image resource, or {@code null} if the sheet was not loaded from a resource
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Name a region of the sheet
+   *
+   * @param name   of the region (replacing any region previously defined with the same name)
+   * @param x      coordinate of the region origin within the sheet
+   * @param y      coordinate of the region origin within the sheet
+   * @param width  of the region
+   * @param height of the region
+   * @throws IllegalArgumentException if the region does not lie within the sheet
+   */
+  public synchronized void defineRegion(String name, int x, int y, int width, int height) {
+    if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > image.getWidth() || y + height > image.getHeight()) {
+      throw new IllegalArgumentException("Region " + name + " does not lie within the sprite sheet");
+    }
+    regions.put(name, new Rectangle(x, y, width, height));
+  }
+
+  /**
+   * <p>Divide the sheet into a grid of equally-sized regions</p>
+   *
+   * <p>Regions are named {@code prefix0}, {@code prefix1}, {@code prefix2}, etc. from left to right, then top to
+   * bottom. Any space left over at the right or bottom of the sheet is ignored.</p>
+   *
+   * @param prefix of the region names
+   * @param width  of each region
+   * @param height of each region
+   * @return Number of regions defined
+   */
+  public synchronized int defineGrid(String prefix, int width, int height) {
+    int count = 0;
+    for (int y = 0; y + height <= image.getHeight(); y += height) {
+      for (int x = 0; x + width <= image.getWidth(); x += width) {
+        defineRegion(prefix + count, x, y, width, height);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Look up a named region
+   *
+   * @param name of the region
+   * @return Copy of the region's bounds within the sheet, or {@code null} if there is no such region
+   */
+  public synchronized Rectangle getRegion(String name) {
+    Rectangle region = regions.get(name);
+    return region == null ? null : new Rectangle(region);
+  }
+
+  /**
+   * Names of all defined regions
+   *
+   * @return Unmodifiable copy of the region names, in the order in which they were defined
+   */
+  public synchronized Set<String> getRegionNames() {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(regions.keySet()));
+  }
+
+  /**
+   * Shared (unmodified) region, for drawing
+   *
+   * @param name of the region
+   * @return Region, or {@code null} if there is no such region
+   */
+  synchronized Rectangle region(String name) {
+    return regions.get(name);
+  }
+}
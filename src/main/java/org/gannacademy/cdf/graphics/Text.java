@@ -1,9 +1,13 @@
 package org.gannacademy.cdf.graphics;
 
 import org.gannacademy.cdf.graphics.ui.DrawingPanel;
+import org.gannacademy.cdf.graphics.ui.SvgWriter;
 
 import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
 import java.awt.geom.Rectangle2D;
+import java.io.IOException;
 
 /**
  * <p>Draw text</p>
@@ -13,10 +17,68 @@ import java.awt.geom.Rectangle2D;
  * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
  */
 public class Text extends Drawable {
+  /**
+   * <p>Glyphs of a string laid out in a font</p>
+   *
+   * <p>Laying out a string is the most expensive part of drawing it, so the glyphs are laid out once and reused for
+   * every frame until the text or font changes. The layout depends on the font rendering context of the graphics
+   * context as well, so the glyphs are laid out again if the rendering context changes (e.g. if antialiasing is turned
+   * on).</p>
+   */
+  private static class Glyphs {
+    final String text;
+    final Font font;
+    private FontRenderContext fontRenderContext = null;
+    private GlyphVector vector = null;
+
+    Glyphs(String text, Font font) {
+      this.text = text;
+      this.font = font;
+    }
+
+    synchronized GlyphVector get(FontRenderContext fontRenderContext) {
+      if (vector == null || !fontRenderContext.equals(this.fontRenderContext)) {
+        char[] chars = text.toCharArray();
+        if (font.hasLayoutAttributes() || Font.textRequiresLayout(chars, 0, chars.length)) {
+          vector = font.layoutGlyphVector(fontRenderContext, chars, 0, chars.length, Font.LAYOUT_LEFT_TO_RIGHT);
+        } else {
+          vector = font.createGlyphVector(fontRenderContext, chars);
+        }
+        this.fontRenderContext = fontRenderContext;
+      }
+      return vector;
+    }
+  }
+
+  /**
+   * Copy of the state of a text object
+   */
+  private static class TextState extends State {
+    final Glyphs glyphs;
+    final float x, y;
+
+    TextState(Text component) {
+      super(component);
+      glyphs = component.getGlyphs();
+      x = (float) component.getX();
+      y = (float) component.getY();
+    }
+  }
+
   private double x, y;
   private String text;
   private Font font = new Font("Arial", Font.PLAIN, 20);
 
+  /**
+   * Measurements of the current text in the current font (looked up when first needed)
+   */
+  private TextMetrics metrics = null;
+
+  /**
+   * Glyphs of the current text in the current font (laid out when first drawn)
+   */
+  private Glyphs glyphs = null;
+
   /**
    * <p>Construct a new text object</p>
    *
@@ -41,7 +103,8 @@ public class Text extends Drawable {
 
   @Override
   public Shape getShape() {
-    return new Rectangle2D.Double(x, y - getMaxAscent(), getWidth(), getHeight());
+    TextMetrics metrics = getMetrics();
+    return new Rectangle2D.Double(x, y - metrics.getMaxAscent(), metrics.getWidth(), metrics.getHeight());
   }
 
   @Override
@@ -52,6 +115,7 @@ public class Text extends Drawable {
   @Override
   public void setX(double x) {
     this.x = x;
+    changed();
   }
 
   @Override
@@ -62,11 +126,12 @@ public class Text extends Drawable {
   @Override
   public void setY(double y) {
     this.y = y;
+    changed();
   }
 
   @Override
   public double getWidth() {
-    return getDrawingPanel().getFontMetrics(getFont()).getStringBounds(getText(), getDrawingPanel().getGraphics()).getWidth();
+    return getMetrics().getWidth();
   }
 
   /**
@@ -82,7 +147,7 @@ public class Text extends Drawable {
 
   @Override
   public double getHeight() {
-    return getDrawingPanel().getFontMetrics(getFont()).getHeight();
+    return getMetrics().getHeight();
   }
 
   /**
@@ -112,6 +177,9 @@ public class Text extends Drawable {
    */
   public void setText(String text) {
     this.text = text;
+    metrics = null;
+    glyphs = null;
+    changed();
   }
 
   /**
@@ -130,16 +198,35 @@ public class Text extends Drawable {
    */
   public void setFont(Font font) {
     this.font = font;
+    metrics = null;
+    glyphs = null;
+    changed();
   }
 
   public Rectangle2D getBounds() {
-    return getBounds(getDrawingPanel());
+    return getMetrics().getBounds();
   }
 
-  private Rectangle2D getBounds(DrawingPanel drawingPanel) {
-    return drawingPanel.getGraphics().getFontMetrics(getFont())
-            .getStringBounds(getText(), getDrawingPanel().getGraphics())
-            .getBounds2D();
+  /**
+   * Measurements of the current text in the current font
+   *
+   * @return Measurements of the current text in the current font
+   * @see TextMetrics
+   */
+  public TextMetrics getMetrics() {
+    TextMetrics metrics = this.metrics;
+    if (metrics == null) {
+      metrics = TextMetrics.get(getText(), getFont());
+      this.metrics = metrics;
+    }
+    return metrics;
+  }
+
+  private Glyphs getGlyphs() {
+    if (glyphs == null) {
+      glyphs = new Glyphs(getText(), getFont());
+    }
+    return glyphs;
   }
 
   /**
@@ -148,7 +235,7 @@ public class Text extends Drawable {
    * @return Height of maximum ascent in current font
    */
   public double getMaxAscent() {
-    return getDrawingPanel().getGraphics().getFontMetrics(getFont()).getMaxAscent();
+    return getMetrics().getMaxAscent();
   }
 
 
@@ -158,29 +245,53 @@ public class Text extends Drawable {
    * @return height of maximum descent in current font
    */
   public double getMaxDescent() {
-    return getDrawingPanel().getGraphics().getFontMetrics(getFont()).getMaxDescent();
+    return getMetrics().getMaxDescent();
   }
 
   @Override
   public void translate(double dx, double dy) {
-    setX(x + dx);
-    setY(y + dy);
+    x += dx;
+    y += dy;
+    translated(dx, dy);
   }
 
   @Override
   public void setLocation(double x, double y) {
-    setX(x);
-    setY(y);
+    double dx = x - this.x, dy = y - this.y;
+    this.x = x;
+    this.y = y;
+    translated(dx, dy);
+  }
+
+  @Override
+  protected State captureState() {
+    return new TextState(this);
+  }
+
+  @Override
+  protected void draw(Graphics2D graphics, State state) {
+    TextState text = (TextState) state;
+    if (text.fillColor != TRANSPARENT) {
+      graphics.setPaint(text.fillColor);
+      graphics.fill(text.shape);
+    }
+    graphics.setPaint(text.strokeColor);
+    graphics.drawGlyphVector(text.glyphs.get(graphics.getFontRenderContext()), text.x, text.y);
   }
 
+  /**
+   * Text is written as an SVG text element, unless its font is transformed, in which case the outlines of the glyphs
+   * are written instead
+   */
   @Override
-  public void draw(Graphics2D graphics) {
-    if (getFillColor() != TRANSPARENT) {
-      graphics.setPaint(getFillColor());
-      graphics.fill(getShape());
+  protected void writeSvg(SvgWriter svg, State state) throws IOException {
+    TextState text = (TextState) state;
+    svg.writeShape(text.shape, text.fillColor, null, null);
+    if (text.glyphs.font.isTransformed()) {
+      GlyphVector vector = text.glyphs.get(new FontRenderContext(null, true, true));
+      svg.writeShape(vector.getOutline(text.x, text.y), text.strokeColor, null, null);
+    } else {
+      svg.writeText(text.glyphs.text, text.glyphs.font, text.x, text.y, text.strokeColor);
     }
-    graphics.setPaint(getStrokeColor());
-    graphics.setFont(getFont());
-    graphics.drawString(getText(), (float) getX(), (float) getY());
   }
 }
@@ -0,0 +1,283 @@
+package org.gannacademy.cdf.graphics;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Measurements of a string of text drawn in a particular font</p>
+ *
+ * <p>Measuring text requires looking up the metrics of its font and laying out the string, which is expensive enough
+ * to matter when many labels are measured every frame. Measurements are therefore shared by all {@link Text} objects
+ * in a cache keyed by font and string. The cache holds at most {@link #getCapacity()} measurements, discarding the
+ * least recently used measurement when it is full.</p>
+ *
+ * <p>Text is measured off-screen, in a font rendering context matching the one that a {@link
+ * org.gannacademy.cdf.graphics.ui.DrawingPanel} draws with (antialiased, without fractional metrics), so measuring
+ * text does not require a drawing panel to be displayed &mdash; or even a display at all. The font metrics used to
+ * measure each font are looked up once and shared by every measurement in that font.</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ */
+public final class TextMetrics {
+
+  /**
+   * Defaults to caching up to 4096 text measurements
+   */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  /**
+   * Cache key: a string drawn in a font
+   */
+  private static final class Key {
+    final Font font;
+    final String text;
+    final int hash;
+
+    Key(Font font, String text) {
+      this.font = font;
+      this.text = text;
+      hash = 31 * font.hashCode() + text.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return hash == key.hash && text.equals(key.text) && font.equals(key.font);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * Off-screen graphics context in which text is measured
+   */
+  private static final Graphics2D context = createContext();
+
+  private static int capacity = DEFAULT_CAPACITY;
+  private static long hits = 0, misses = 0;
+
+  /**
+   * Font metrics, in least- to most-recently used order
+   */
+  private static final LinkedHashMap<Font, FontMetrics> fontMetrics = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Font, FontMetrics> eldest) {
+      return size() > capacity;
+    }
+  };
+
+  /**
+   * Measurements, in least- to most-recently used order
+   */
+  private static final LinkedHashMap<Key, TextMetrics> cache = new LinkedHashMap<>(64, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, TextMetrics> eldest) {
+      return size() > capacity;
+    }
+  };
+
+  private final double width, height, maxAscent, maxDescent;
+  private final Rectangle2D bounds;
+
+  private TextMetrics(FontMetrics metrics, String text) {
+    bounds = metrics.getStringBounds(text, context);
+    width = bounds.getWidth();
+    height = metrics.getHeight();
+    maxAscent = metrics.getMaxAscent();
+    maxDescent = metrics.getMaxDescent();
+  }
+
+  private static Graphics2D createContext() {
+    Graphics2D context = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    context.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    return context;
+  }
+
+  /**
+   * Font rendering context in which text is measured
+   *
+   * @return Font rendering context in which text is measured
+   */
+  public static FontRenderContext getFontRenderContext() {
+    return context.getFontRenderContext();
+  }
+
+  /**
+   * Metrics of a font (looked up once and shared by all measurements in that font)
+   *
+   * @param font to look up
+   * @return Metrics of the font in the measuring font rendering context
+   */
+  private static FontMetrics getFontMetrics(Font font) {
+    synchronized (cache) {
+      FontMetrics metrics = fontMetrics.get(font);
+      if (metrics == null) {
+        metrics = context.getFontMetrics(font);
+        fontMetrics.put(font, metrics);
+      }
+      return metrics;
+    }
+  }
+
+  /**
+   * Measure a string of text
+   *
+   * @param text to measure
+   * @param font in which the text is drawn
+   * @return Measurements of the text
+   */
+  public static TextMetrics get(String text, Font font) {
+    Key key = new Key(font, text);
+    synchronized (cache) {
+      TextMetrics metrics = cache.get(key);
+      if (metrics != null) {
+        hits++;
+        return metrics;
+      }
+      misses++;
+    }
+    TextMetrics metrics = new TextMetrics(getFontMetrics(font), text);
+    synchronized (cache) {
+      cache.put(key, metrics);
+    }
+    return metrics;
+  }
+
+  /**
+   * Width of the text
+   *
+   * @return Width of the text
+   */
+  public double getWidth() {
+    return width;
+  }
+
+  /**
+   * Line height of the font
+   *
+   * @return Line height of the font
+   */
+  public double getHeight() {
+    return height;
+  }
+
+  /**
+   * Height of maximum character ascent in the font
+   *
+   * @return Height of maximum character ascent in the font
+   */
+  public double getMaxAscent() {
+    return maxAscent;
+  }
+
+  /**
+   * Height of maximum character descent in the font
+   *
+   * @return Height of maximum character descent in the font
+   */
+  public double getMaxDescent() {
+    return maxDescent;
+  }
+
+  /**
+   * Logical bounds of the text, relative to its baseline origin
+   *
+   * @return Logical bounds of the text
+   */
+  public Rectangle2D getBounds() {
+    return (Rectangle2D) bounds.clone();
+  }
+
+  /**
+   * Maximum number of measurements cached
+   *
+   * @return Maximum number of measurements cached
+   */
+  public static int getCapacity() {
+    synchronized (cache) {
+      return capacity;
+    }
+  }
+
+  /**
+   * Set the maximum number of measurements cached (discarding the least recently used measurements if necessary)
+   *
+   * @param capacity to use (must be positive)
+   */
+  public static void setCapacity(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Cache capacity must be positive");
+    }
+    synchronized (cache) {
+      TextMetrics.capacity = capacity;
+      trim(cache);
+      trim(fontMetrics);
+    }
+  }
+
+  private static void trim(LinkedHashMap<?, ?> map) {
+    Iterator<?> eldest = map.keySet().iterator();
+    while (map.size() > capacity) {
+      eldest.next();
+      eldest.remove();
+    }
+  }
+
+  /**
+   * Number of measurements currently cached
+   *
+   * @return Number of measurements currently cached
+   */
+  public static int size() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  /**
+   * Number of measurements found in the cache
+   *
+   * @return Number of cache hits since the cache was last cleared
+   */
+  public static long getHitCount() {
+    synchronized (cache) {
+      return hits;
+    }
+  }
+
+  /**
+   * Number of measurements that had to be computed
+   *
+   * @return Number of cache misses since the cache was last cleared
+   */
+  public static long getMissCount() {
+    synchronized (cache) {
+      return misses;
+    }
+  }
+
+  /**
+   * Discard all cached measurements (and reset the hit and miss counts)
+   */
+  public static void clear() {
+    synchronized (cache) {
+      cache.clear();
+      fontMetrics.clear();
+      hits = misses = 0;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package org.gannacademy.cdf.graphics.example.benchmark;
+
+import org.gannacademy.cdf.graphics.Drawable;
+import org.gannacademy.cdf.graphics.geom.*;
+import org.gannacademy.cdf.graphics.ui.DrawingPanel;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Verify that {@link Drawable#translate(double, double)} and {@link Drawable#setLocation(double, double)} allocate no
+ * memory for any of the geometric drawable components
+ */
+public class AllocationProfile {
+    private static final int WARM_UP = 100_000;
+    private static final int CALLS = 1_000_000;
+
+    private interface Operation {
+        void apply(Drawable component, int i);
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static double bytesPerCall(Drawable component, Operation operation) {
+        for (int i = 0; i < WARM_UP; i++) {
+            operation.apply(component, i);
+        }
+        long thread = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < CALLS; i++) {
+            operation.apply(component, i);
+        }
+        return (double) (THREADS.getThreadAllocatedBytes(thread) - before) / CALLS;
+    }
+
+    public static void main(String[] args) {
+        DrawingPanel panel = new DrawingPanel();
+        Path path = new Path(panel);
+        path.moveTo(0, 0);
+        path.curveTo(10, 0, 20, 10, 20, 20);
+        path.quadTo(10, 30, 0, 20);
+        path.closePath();
+        Drawable[] components = {
+                new Rectangle(0, 0, 20, 10, panel),
+                new RoundRectangle(0, 0, 20, 10, 4, 4, panel),
+                new Ellipse(0, 0, 20, 10, panel),
+                new Arc(0, 0, 20, 10, 45, 270, panel),
+                new Line(0, 0, 20, 10, panel),
+                new QuadCurve(0, 0, 10, 20, 20, 0, panel),
+                new CubicCurve(0, 0, 5, 20, 15, -20, 20, 0, panel),
+                path
+        };
+
+        boolean allocationFree = true;
+        for (Drawable component : components) {
+            double translate = bytesPerCall(component, (c, i) -> c.translate((i & 1) == 0 ? 1 : -1, 0.5));
+            double setLocation = bytesPerCall(component, (c, i) -> c.setLocation(i & 0xff, i & 0x7f));
+            System.out.printf("%-15s translate() %6.2f bytes/call, setLocation() %6.2f bytes/call%n",
+                    component.getClass().getSimpleName(), translate, setLocation);
+            allocationFree &= translate == 0 && setLocation == 0;
+        }
+        System.out.println(allocationFree ? "PASS: no allocation" : "FAIL: allocation detected");
+        System.exit(allocationFree ? 0 : 1);
+    }
+}
@@ -0,0 +1,51 @@
+package org.gannacademy.cdf.graphics.example.benchmark;
+
+import org.gannacademy.cdf.graphics.Drawable;
+import org.gannacademy.cdf.graphics.geom.Rectangle;
+import org.gannacademy.cdf.graphics.ui.DrawingPanel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measure add/remove throughput of a {@link DrawingPanel} at increasing numbers of components
+ */
+public class DisplayListBenchmark {
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        for (int size : SIZES) {
+            DrawingPanel scratch = new DrawingPanel();
+            List<Drawable> components = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                components.add(new Rectangle(random.nextInt(600), random.nextInt(400), 10, 10, scratch));
+            }
+            scratch.clear();
+
+            long addNanos = 0, removeNanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                DrawingPanel panel = new DrawingPanel();
+                long start = System.nanoTime();
+                for (Drawable component : components) {
+                    panel.add(component);
+                }
+                addNanos += System.nanoTime() - start;
+
+                Collections.shuffle(components, random);
+                start = System.nanoTime();
+                for (Drawable component : components) {
+                    panel.remove(component);
+                }
+                removeNanos += System.nanoTime() - start;
+            }
+            System.out.printf("%,9d components: add %,12.0f ops/s, remove %,12.0f ops/s%n",
+                    size,
+                    size * ROUNDS / (addNanos / 1e9),
+                    size * ROUNDS / (removeNanos / 1e9));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.gannacademy.cdf.graphics.example.benchmark;
+
+import org.gannacademy.cdf.graphics.CompatibleImage;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Compare {@link Graphics2D#drawImage(java.awt.Image, int, int, java.awt.image.ImageObserver)} throughput for images
+ * in the pixel formats that {@link javax.imageio.ImageIO} typically returns to the same images converted by {@link
+ * CompatibleImage#convert(BufferedImage)}
+ */
+public class ImageDrawingBenchmark {
+    private static final int SPRITE_SIZE = 64;
+    private static final int WIDTH = 800, HEIGHT = 600;
+    private static final int ROUNDS = 5;
+    private static final int DRAWS = 20_000;
+
+    private static BufferedImage sprite(int type, Random random) {
+        BufferedImage image = new BufferedImage(SPRITE_SIZE, SPRITE_SIZE, type);
+        for (int x = 0; x < SPRITE_SIZE; x++) {
+            for (int y = 0; y < SPRITE_SIZE; y++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static double drawsPerSecond(Graphics2D graphics, BufferedImage image, Random random) {
+        double best = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < DRAWS; i++) {
+                graphics.drawImage(image, random.nextInt(WIDTH - SPRITE_SIZE), random.nextInt(HEIGHT - SPRITE_SIZE), null);
+            }
+            best = Math.max(best, DRAWS / ((System.nanoTime() - start) / 1e9));
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        BufferedImage destination = CompatibleImage.create(WIDTH, HEIGHT, Transparency.OPAQUE);
+        Graphics2D graphics = destination.createGraphics();
+        String[] names = {"TYPE_3BYTE_BGR", "TYPE_4BYTE_ABGR", "TYPE_BYTE_INDEXED"};
+        int[] types = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_INDEXED};
+        for (int i = 0; i < types.length; i++) {
+            BufferedImage loaded = sprite(types[i], random);
+            BufferedImage compatible = CompatibleImage.convert(loaded);
+            double before = drawsPerSecond(graphics, loaded, random);
+            double after = drawsPerSecond(graphics, compatible, random);
+            System.out.printf("%-18s %,10.0f draws/s, compatible (type %d) %,10.0f draws/s (%.1fx)%n",
+                    names[i] + ":", before, compatible.getType(), after, after / before);
+        }
+        graphics.dispose();
+    }
+}
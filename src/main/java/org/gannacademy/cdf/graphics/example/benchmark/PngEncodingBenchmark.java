@@ -0,0 +1,69 @@
+package org.gannacademy.cdf.graphics.example.benchmark;
+
+import org.gannacademy.cdf.graphics.geom.Ellipse;
+import org.gannacademy.cdf.graphics.geom.Rectangle;
+import org.gannacademy.cdf.graphics.ui.DrawingPanel;
+import org.gannacademy.cdf.graphics.ui.PngEncoder;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compare the time to encode a large drawing as a PNG with {@link ImageIO#write(java.awt.image.RenderedImage, String,
+ * java.io.OutputStream)} to {@link PngEncoder} (and check that both decode to the same pixels)
+ *
+ * <p>Usage: {@code PngEncodingBenchmark [size]} (default 4096, for a 4096×4096 image)</p>
+ */
+public class PngEncodingBenchmark {
+    private static final int DEFAULT_SIZE = 4096;
+    private static final int SHAPES = 2_000;
+    private static final int ROUNDS = 3;
+
+    private interface Encoder {
+        void encode(BufferedImage image, ByteArrayOutputStream out) throws IOException;
+    }
+
+    private static void measure(String name, BufferedImage image, Encoder encoder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            out.reset();
+            long start = System.nanoTime();
+            encoder.encode(image, out);
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        boolean identical = true;
+        for (int y = 0; y < image.getHeight() && identical; y++) {
+            for (int x = 0; x < image.getWidth() && identical; x++) {
+                identical = image.getRGB(x, y) == decoded.getRGB(x, y);
+            }
+        }
+        System.out.printf("%-28s %8.0f ms %,14d bytes %s%n", name, best, out.size(), identical ? "" : "PIXELS DIFFER");
+    }
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        Random random = new Random(0);
+        DrawingPanel panel = new DrawingPanel();
+        for (int i = 0; i < SHAPES; i++) {
+            double x = random.nextInt(size), y = random.nextInt(size), extent = 20 + random.nextInt(size / 8);
+            (i % 2 == 0 ? new Rectangle(x, y, extent, extent, panel) : new Ellipse(x, y, extent, extent, panel))
+                    .setFillColor(new Color(random.nextInt(), true));
+        }
+        BufferedImage image = panel.render(size, size);
+        System.out.printf("%d×%d image, %d threads%n", size, size, ForkJoinPool.commonPool().getParallelism());
+
+        measure("ImageIO.write()", image, (img, out) -> ImageIO.write(img, "PNG", out));
+        for (int level : new int[]{1, PngEncoder.DEFAULT_COMPRESSION_LEVEL, 9}) {
+            PngEncoder encoder = new PngEncoder(level);
+            measure("PngEncoder (level " + level + ")", image, encoder::write);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.gannacademy.cdf.graphics.example.benchmark;
+
+import org.gannacademy.cdf.graphics.Text;
+import org.gannacademy.cdf.graphics.ui.DrawingPanel;
+
+import java.awt.*;
+import java.awt.font.TextAttribute;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+
+/**
+ * Compare the frame time of drawing 10,000 static labels with {@link Graphics2D#drawString(String, float, float)}
+ * (laying out each label every frame) to drawing them with {@link Text#draw(Graphics2D)} (reusing cached glyphs), both
+ * in a plain font and in a font with kerning and ligatures enabled
+ */
+public class TextRenderingBenchmark {
+    private static final int LABELS = 10_000;
+    private static final int ROUNDS = 5;
+    private static final int FRAMES = 20;
+    private static final int WIDTH = 1200, HEIGHT = 800;
+
+    private interface Frame {
+        void draw(Graphics2D graphics);
+    }
+
+    private static double millisPerFrame(Graphics2D graphics, Frame frame) {
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            frame.draw(graphics);
+        }
+        return (System.nanoTime() - start) / 1e6 / FRAMES;
+    }
+
+    private static void compare(String name, Font font) {
+        DrawingPanel panel = new DrawingPanel();
+        Text[] labels = new Text[LABELS];
+        for (int i = 0; i < LABELS; i++) {
+            labels[i] = new Text("Label #" + i + " AVE fi", (i * 37) % WIDTH, 12 + (i * 13) % HEIGHT, panel);
+            labels[i].setFont(font);
+            labels[i].commit();
+        }
+        Frame drawString = graphics -> {
+            for (Text label : labels) {
+                graphics.setPaint(label.getStrokeColor());
+                graphics.setFont(label.getFont());
+                graphics.drawString(label.getText(), (float) label.getX(), (float) label.getY());
+            }
+        };
+        Frame glyphVector = graphics -> {
+            for (Text label : labels) {
+                label.draw(graphics);
+            }
+        };
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        double bestDrawString = Double.MAX_VALUE, bestGlyphVector = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            bestDrawString = Math.min(bestDrawString, millisPerFrame(graphics, drawString));
+            bestGlyphVector = Math.min(bestGlyphVector, millisPerFrame(graphics, glyphVector));
+        }
+        graphics.dispose();
+        System.out.printf("%,d labels, %-24s drawString() %7.2f ms/frame, cached glyphs %7.2f ms/frame (%.1fx)%n",
+                LABELS, name + ":", bestDrawString, bestGlyphVector, bestDrawString / bestGlyphVector);
+    }
+
+    public static void main(String[] args) {
+        Font plain = new Font("Arial", Font.PLAIN, 12);
+        compare("plain font", plain);
+        compare("kerning and ligatures", plain.deriveFont(Map.of(
+                TextAttribute.KERNING, TextAttribute.KERNING_ON,
+                TextAttribute.LIGATURES, TextAttribute.LIGATURES_ON)));
+    }
+}
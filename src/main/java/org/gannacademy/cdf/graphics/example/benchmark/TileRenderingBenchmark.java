@@ -0,0 +1,69 @@
+package org.gannacademy.cdf.graphics.example.benchmark;
+
+import org.gannacademy.cdf.graphics.geom.Ellipse;
+import org.gannacademy.cdf.graphics.geom.Rectangle;
+import org.gannacademy.cdf.graphics.ui.DrawingPanel;
+import org.gannacademy.cdf.graphics.ui.TileRenderer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compare the time to render a dense drawing with {@link DrawingPanel#render(BufferedImage)} (on a single thread) to
+ * {@link TileRenderer} at several tile sizes (and count the pixels that differ)
+ *
+ * <p>Usage: {@code TileRenderingBenchmark [size] [shapes]} (default a 2048×2048 image of 50,000 shapes)</p>
+ */
+public class TileRenderingBenchmark {
+    private static final int DEFAULT_SIZE = 2048;
+    private static final int DEFAULT_SHAPES = 50_000;
+    private static final int ROUNDS = 5;
+
+    private interface Renderer {
+        void render(BufferedImage image);
+    }
+
+    private static BufferedImage measure(String name, int size, Renderer renderer, BufferedImage reference) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            renderer.render(image);
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        int different = 0;
+        if (reference != null) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (image.getRGB(x, y) != reference.getRGB(x, y)) {
+                        different++;
+                    }
+                }
+            }
+        }
+        System.out.printf("%-28s %8.1f ms %,10d pixels differ%n", name, best, different);
+        return image;
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        int shapes = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SHAPES;
+        Random random = new Random(0);
+        DrawingPanel panel = new DrawingPanel();
+        for (int i = 0; i < shapes; i++) {
+            double x = random.nextInt(size), y = random.nextInt(size), extent = 4 + random.nextInt(40);
+            (i % 2 == 0 ? new Rectangle(x, y, extent, extent, panel) : new Ellipse(x, y, extent, extent, panel))
+                    .setFillColor(new Color(random.nextInt(), true));
+        }
+        System.out.printf("%d×%d image, %,d shapes, %d threads%n", size, size, shapes,
+                ForkJoinPool.commonPool().getParallelism());
+
+        BufferedImage reference = measure("DrawingPanel.render()", size, panel::render, null);
+        for (int tileSize : new int[]{64, TileRenderer.DEFAULT_TILE_SIZE, 256, 512}) {
+            TileRenderer renderer = new TileRenderer(panel, tileSize, ForkJoinPool.commonPool());
+            measure("TileRenderer (" + tileSize + "px tiles)", size, renderer::render, reference);
+        }
+    }
+}
@@ -92,6 +92,7 @@ public class Arc extends Drawable2D {
      */
     public void setAngleStart(double start) {
         getShapeAsArc().setAngleStart(start);
+        changed();
     }
 
     /**
@@ -102,6 +103,7 @@ public class Arc extends Drawable2D {
      */
     public void setAngleExtent(double extent) {
         getShapeAsArc().setAngleExtent(extent);
+        changed();
     }
 
     @Override
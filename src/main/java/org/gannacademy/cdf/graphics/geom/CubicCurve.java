@@ -146,6 +146,17 @@ public class CubicCurve extends Drawable {
     return getShapeAsCubicCurve().getP1();
   }
 
+  /**
+   * Starting point, without creating a new point object
+   *
+   * @param p1 point in which to store the coordinates of the starting point
+   * @return {@code p1}
+   */
+  public Point2D getP1(Point2D p1) {
+    p1.setLocation(getX1(), getY1());
+    return p1;
+  }
+
   /**
    * Ending point
    *
@@ -156,6 +167,17 @@ public class CubicCurve extends Drawable {
     return getShapeAsCubicCurve().getP2();
   }
 
+  /**
+   * Ending point, without creating a new point object
+   *
+   * @param p2 point in which to store the coordinates of the ending point
+   * @return {@code p2}
+   */
+  public Point2D getP2(Point2D p2) {
+    p2.setLocation(getX2(), getY2());
+    return p2;
+  }
+
   /**
    * <p>Set the points describing the curve</p>
    *
@@ -174,6 +196,7 @@ public class CubicCurve extends Drawable {
    */
   public void setCurve(double x1, double y1, double ctrlX1, double ctrlY1, double ctrlX2, double ctrlY2, double x2, double y2) {
     getShapeAsCubicCurve().setCurve(x1, y1, ctrlX1, ctrlY1, ctrlX2, ctrlY2, x2, y2);
+    changed();
   }
 
   /**
@@ -226,6 +249,17 @@ public class CubicCurve extends Drawable {
     return getShapeAsCubicCurve().getCtrlP1();
   }
 
+  /**
+   * First control point, without creating a new point object
+   *
+   * @param ctrlP1 point in which to store the coordinates of the first control point
+   * @return {@code ctrlP1}
+   */
+  public Point2D getCtrlP1(Point2D ctrlP1) {
+    ctrlP1.setLocation(getCtrlX1(), getCtrlY1());
+    return ctrlP1;
+  }
+
   /**
    * X-coordinate of second control point
    *
@@ -256,6 +290,17 @@ public class CubicCurve extends Drawable {
     return getShapeAsCubicCurve().getCtrlP2();
   }
 
+  /**
+   * Second control point, without creating a new point object
+   *
+   * @param ctrlP2 point in which to store the coordinates of the second control point
+   * @return {@code ctrlP2}
+   */
+  public Point2D getCtrlP2(Point2D ctrlP2) {
+    ctrlP2.setLocation(getCtrlX2(), getCtrlY2());
+    return ctrlP2;
+  }
+
   /**
    * X-coordinate of ending point
    *
@@ -284,6 +329,7 @@ public class CubicCurve extends Drawable {
             getCtrlX2() + dx, getCtrlY2() + dy,
             getX2() + dx, getY2() + dy
     );
+    translated(dx, dy);
   }
 
   @Override
@@ -114,6 +114,17 @@ public class Line extends Drawable {
     return getShapeAsLine().getP1();
   }
 
+  /**
+   * Starting point, without creating a new point object
+   *
+   * @param p1 point in which to store the coordinates of the starting point
+   * @return {@code p1}
+   */
+  public Point2D getP1(Point2D p1) {
+    p1.setLocation(getX1(), getY1());
+    return p1;
+  }
+
   /**
    * Ending point
    *
@@ -124,6 +135,17 @@ public class Line extends Drawable {
     return getShapeAsLine().getP2();
   }
 
+  /**
+   * Ending point, without creating a new point object
+   *
+   * @param p2 point in which to store the coordinates of the ending point
+   * @return {@code p2}
+   */
+  public Point2D getP2(Point2D p2) {
+    p2.setLocation(getX2(), getY2());
+    return p2;
+  }
+
   /**
    * Replace the underlying geometry
    *
@@ -134,6 +156,7 @@ public class Line extends Drawable {
    */
   public void setLine(double x1, double y1, double x2, double y2) {
     getShapeAsLine().setLine(x1, y1, x2, y2);
+    changed();
   }
 
   /**
@@ -179,10 +202,13 @@ public class Line extends Drawable {
   @Override
   public void translate(double dx, double dy) {
     getShapeAsLine().setLine(getX1() + dx, getY1() + dy, getX2() + dx, getY2() + dy);
+    translated(dx, dy);
   }
 
   @Override
   public void setLocation(double x, double y) {
-    getShapeAsLine().setLine(x, y, x + getX1() - getX2(), y + getY1() - getY2());
+    double left = Math.min(getX1(), getX2()), top = Math.min(getY1(), getY2());
+    getShapeAsLine().setLine(x + getX1() - left, y + getY1() - top, x + getX2() - left, y + getY2() - top);
+    translated(x - left, y - top);
   }
 }
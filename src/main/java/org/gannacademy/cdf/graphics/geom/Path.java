@@ -56,6 +56,11 @@ import java.awt.geom.Path2D;
  * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
  */
 public class Path extends Drawable {
+    /**
+     * Reusable transformation for {@link #translate(double, double)}
+     */
+    private final AffineTransform translation = new AffineTransform();
+
     /**
      * <p>Construct a path with empty geometry</p>
      *
@@ -173,6 +178,7 @@ public class Path extends Drawable {
      */
     public void curveTo(double ctrlX1, double ctrlY1, double ctrlX2, double ctrlY2, double x3, double y3) {
         getShapeAsPath().curveTo(ctrlX1, ctrlY1, ctrlX2, ctrlY2, x3, y3);
+        changed();
     }
 
     /**
@@ -187,6 +193,7 @@ public class Path extends Drawable {
      */
     public void lineTo(double x, double y) {
         getShapeAsPath().lineTo(x, y);
+        changed();
     }
 
     @Override
@@ -206,6 +213,7 @@ public class Path extends Drawable {
      */
     public void moveTo(double x, double y) {
         getShapeAsPath().moveTo(x, y);
+        changed();
     }
 
 
@@ -224,6 +232,7 @@ public class Path extends Drawable {
      */
     public void quadTo(double ctrlX1, double ctrlY1, double x2, double y2) {
         getShapeAsPath().quadTo(ctrlX1, ctrlY1, x2, y2);
+        changed();
     }
 
     /**
@@ -231,6 +240,7 @@ public class Path extends Drawable {
      */
     public void closePath() {
         getShapeAsPath().closePath();
+        changed();
     }
 
     /**
@@ -244,6 +254,7 @@ public class Path extends Drawable {
      */
     public void transform(AffineTransform transformation) {
         getShapeAsPath().transform(transformation);
+        changed();
     }
 
     /**
@@ -258,7 +269,9 @@ public class Path extends Drawable {
      */
     @Override
     public void translate(double dx, double dy) {
-        transform(AffineTransform.getTranslateInstance(dx, dy));
+        translation.setToTranslation(dx, dy);
+        getShapeAsPath().transform(translation);
+        translated(dx, dy);
     }
 
     /**
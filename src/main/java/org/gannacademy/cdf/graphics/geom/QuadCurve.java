@@ -94,6 +94,17 @@ public class QuadCurve extends Drawable {
     return getShapeAsQuadCurve().getP1();
   }
 
+  /**
+   * Starting point, without creating a new point object
+   *
+   * @param p1 point in which to store the coordinates of the starting point
+   * @return {@code p1}
+   */
+  public Point2D getP1(Point2D p1) {
+    p1.setLocation(getX1(), getY1());
+    return p1;
+  }
+
   /**
    * Ending point
    *
@@ -103,6 +114,17 @@ public class QuadCurve extends Drawable {
     return getShapeAsQuadCurve().getP2();
   }
 
+  /**
+   * Ending point, without creating a new point object
+   *
+   * @param p2 point in which to store the coordinates of the ending point
+   * @return {@code p2}
+   */
+  public Point2D getP2(Point2D p2) {
+    p2.setLocation(getX2(), getY2());
+    return p2;
+  }
+
   /**
    * <p>Replace the underlying {@link QuadCurve2D} geometry</p>
    *
@@ -119,6 +141,7 @@ public class QuadCurve extends Drawable {
    */
   public void setCurve(double x1, double y1, double ctrlX, double ctrlY, double x2, double y2) {
     getShapeAsQuadCurve().setCurve(x1, y1, ctrlX, ctrlY, x2, y2);
+    changed();
   }
 
   /**
@@ -166,6 +189,17 @@ public class QuadCurve extends Drawable {
     return getShapeAsQuadCurve().getCtrlPt();
   }
 
+  /**
+   * Control point, without creating a new point object
+   *
+   * @param ctrlPt point in which to store the coordinates of the control point
+   * @return {@code ctrlPt}
+   */
+  public Point2D getCtrlPt(Point2D ctrlPt) {
+    ctrlPt.setLocation(getCtrlX(), getCtrlY());
+    return ctrlPt;
+  }
+
 
   /**
    * X-coordinate of ending point
@@ -188,6 +222,7 @@ public class QuadCurve extends Drawable {
   @Override
   public void translate(double dx, double dy) {
     getShapeAsQuadCurve().setCurve(getX1() + dx, getY1() + dy, getCtrlX() + dx, getCtrlY() + dy, getX2() + dx, getY2() + dy);
+    translated(dx, dy);
   }
 
   @Override
@@ -5,7 +5,7 @@ import org.gannacademy.cdf.graphics.Image;
 import org.gannacademy.cdf.graphics.Text;
 import org.gannacademy.cdf.graphics.geom.Rectangle;
 import org.gannacademy.cdf.graphics.geom.*;
-import org.gannacademy.cdf.graphics.ui.AppWindow;
+import org.gannacademy.cdf.graphics.ui.DrawingPanel;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
@@ -17,7 +17,10 @@ import static org.gannacademy.cdf.graphics.Drawable.NO_STROKE;
 import static org.gannacademy.cdf.graphics.ui.DrawingPanel.DEFAULT_HEIGHT;
 import static org.gannacademy.cdf.graphics.ui.DrawingPanel.DEFAULT_WIDTH;
 
-public class GenerateFigures extends AppWindow {
+/**
+ * Generate the figures used in the javadoc documentation (rendered off-screen, without opening a window)
+ */
+public class GenerateFigures {
     private static final String BASE_PATH = "src/main/java/org/gannacademy/cdf/graphics";
     private static final double
         DIAGRAM_WIDTH = 200,
@@ -44,6 +47,7 @@ public class GenerateFigures extends AppWindow {
     private static final Font LABEL = new Font("Arial", Font.PLAIN, 12);
     private static final BasicStroke DASHED = new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 1, new float[]{3, 3}, 0);
 
+    private final DrawingPanel drawingPanel = new DrawingPanel();
     private Rectangle2D bounds = new Rectangle2D.Double(0, 0, DIAGRAM_WIDTH, DIAGRAM_HEIGHT);
     private HashMap<String, Drawable> components;
 
@@ -51,6 +55,10 @@ public class GenerateFigures extends AppWindow {
         void generate();
     }
 
+    private DrawingPanel getDrawingPanel() {
+        return drawingPanel;
+    }
+
     private static void emptyDir(File dir) {
         File[] contents = dir.listFiles();
         if (contents != null) {
@@ -86,8 +94,7 @@ public class GenerateFigures extends AppWindow {
 
     private void saveFigure(String subpackage, String name, double width, double height) {
         getDrawingPanel().setBackground(BACKGROUND);
-        getDrawingPanel().setSize((int) width, (int) height);
-        getDrawingPanel().saveAs(BASE_PATH + (subpackage.length() > 0 ? "/" : "") + subpackage + "/doc-files/" + name + ".png", "PNG");
+        getDrawingPanel().saveAs(BASE_PATH + (subpackage.length() > 0 ? "/" : "") + subpackage + "/doc-files/" + name + ".png", "PNG", (int) width, (int) height);
         System.out.println("Generated " + (int) width + "×" + (int) height + " PNG " + BASE_PATH + (subpackage.length() > 0 ? "/" : "") + subpackage + "/doc-files/" + name + ".png");
     }
 
@@ -1211,8 +1218,7 @@ public class GenerateFigures extends AppWindow {
         ctrlPt2.setFillColor(ctrlPt1.getFillColor());
     }
 
-    @Override
-    public void setup() {
+    public void generate() {
         components = new HashMap<>();
         resetDir(BASE_PATH + "/doc-files");
         resetDir(BASE_PATH + "/geom/doc-files");
@@ -1248,10 +1254,9 @@ public class GenerateFigures extends AppWindow {
         for (Figure figure : figures) {
             figure.generate();
         }
-        close();
     }
 
     public static void main(String[] args) {
-        new GenerateFigures();
+        new GenerateFigures().generate();
     }
 }
@@ -4,6 +4,10 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * <p>Extendable window controller for {@link DrawingPanel} objects</p>
@@ -34,12 +38,49 @@ import java.awt.event.WindowEvent;
  *
  * <p>Additional overrideable methods include {@link #loop()} and {@link #done()}. {@code loop()} will be
  * called repeatedly (inside a loop!) while {@code done()} returns {@code false} &mdash; when {@code done()} returns
- * {@code true}, the control loop ends (although the application will continue running until the window is closed).</p>
+ * {@code true}, the control loop ends (although the application will continue running until the window is closed).
+ * By default, {@code loop()} is called again as soon as it returns; call {@link #setTicksPerSecond(double)} to run it
+ * at a fixed rate instead.</p>
  *
  * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
  */
 public abstract class AppWindow extends JFrame {
 
+    /**
+     * How the drawing panel is rendered to the screen
+     */
+    public enum Rendering {
+        /**
+         * Swing repaints the drawing panel on the event dispatch thread when asked to (the default)
+         */
+        PASSIVE(0),
+
+        /**
+         * The window renders the drawing panel directly from the control loop, flipping between two buffers
+         */
+        ACTIVE_DOUBLE_BUFFERED(2),
+
+        /**
+         * The window renders the drawing panel directly from the control loop, flipping between three buffers
+         */
+        ACTIVE_TRIPLE_BUFFERED(3);
+
+        private final int buffers;
+
+        Rendering(int buffers) {
+            this.buffers = buffers;
+        }
+
+        /**
+         * Number of page-flipping buffers
+         *
+         * @return Number of buffers (or {@code 0} for passive rendering)
+         */
+        public int getBuffers() {
+            return buffers;
+        }
+    }
+
     /**
      * Default title of the app window
      */
@@ -55,6 +96,26 @@ public abstract class AppWindow extends JFrame {
      */
     public static final long DEFAULT_REPAINT_DELAY = 10;
 
+    /**
+     * Defaults to passive rendering by Swing
+     */
+    public static final Rendering DEFAULT_RENDERING = Rendering.PASSIVE;
+
+    /**
+     * Defaults to an unpaced control loop (no fixed timestep)
+     */
+    public static final double DEFAULT_TICKS_PER_SECOND = 0;
+
+    /**
+     * Defaults to at most 5 catch-up ticks per frame
+     */
+    public static final int DEFAULT_MAX_CATCH_UP_TICKS = 5;
+
+    /**
+     * Defaults to never repainting the whole window, only the regions that have changed
+     */
+    public static final long DEFAULT_FULL_REPAINT_INTERVAL = -1;
+
     /**
      * Drawing panel on which {@link org.gannacademy.cdf.graphics.Drawable} objects are painted
      */
@@ -63,7 +124,53 @@ public abstract class AppWindow extends JFrame {
     /**
      * Has the window been closed?
      */
-    private boolean closed = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Is the control loop running? (If so, it commits changes to the drawing panel; otherwise the repainter does.)
+     */
+    private volatile boolean animating = false;
+
+    /**
+     * Fixed timestep of the control loop, in ticks per second (or {@code 0} for an unpaced loop)
+     */
+    private volatile double ticksPerSecond = DEFAULT_TICKS_PER_SECOND;
+
+    /**
+     * Maximum number of ticks to run in a row to catch up when the control loop falls behind
+     */
+    private volatile int maxCatchUpTicks = DEFAULT_MAX_CATCH_UP_TICKS;
+
+    /**
+     * Longest time between repaints of the whole window, in milliseconds (or a negative value to repaint only damaged
+     * regions)
+     */
+    private volatile long fullRepaintInterval = DEFAULT_FULL_REPAINT_INTERVAL;
+
+    /**
+     * Time of the most recent repaint of the whole window (accessed only on the event dispatch thread)
+     */
+    private long lastFullRepaint = System.nanoTime();
+
+    /**
+     * Is a repaint already waiting to run on the event dispatch thread?
+     */
+    private final AtomicBoolean repaintPending = new AtomicBoolean(false);
+
+    /**
+     * Is a commit of changes made on the event dispatch thread already waiting to run there (when rendering actively)?
+     */
+    private final AtomicBoolean commitPending = new AtomicBoolean(false);
+
+    /**
+     * Number of repaints requested, and number of those requests that were merged into an already-pending repaint
+     */
+    private final AtomicLong repaintRequests = new AtomicLong(), coalescedRepaints = new AtomicLong();
+
+    /**
+     * Page-flipping buffers for active rendering (or {@code null} when rendering passively)
+     */
+    private volatile BufferStrategy bufferStrategy;
 
     /**
      * Construct a new {@link DrawingPanel} in a window with the default title
@@ -100,6 +207,28 @@ public abstract class AppWindow extends JFrame {
      * @param repaintDelay delay between repaints in milliseconds
      */
     public AppWindow(String title, boolean isFullScreen, long repaintDelay) {
+        this(title, isFullScreen, repaintDelay, DEFAULT_RENDERING);
+    }
+
+    /**
+     * <p>Construct a new {@link DrawingPanel} in a window</p>
+     *
+     * <p>Full screen windows default to the main display.</p>
+     *
+     * <p>With {@link Rendering#PASSIVE passive} rendering, repaints are requested from Swing, which draws the drawing
+     * panel on the event dispatch thread when it gets around to it. With active rendering, the window instead draws
+     * the drawing panel itself, directly from the control loop (or the repainter, when there is no control loop), into
+     * a set of page-flipping buffers, which avoids waiting on the event dispatch thread. Active rendering draws every
+     * frame in full, rather than repainting only the regions that have changed. Swing components added to the drawing
+     * panel (e.g. buttons) are not drawn when rendering actively.</p>
+     *
+     * @param title        for the window
+     * @param isFullScreen whether or not the window is framed or full screen
+     * @param repaintDelay delay between repaints in milliseconds
+     * @param rendering    mode
+     * @see DrawingPanel#getFrameStatistics()
+     */
+    public AppWindow(String title, boolean isFullScreen, long repaintDelay, Rendering rendering) {
         super(title);
         AppWindow self = this;
         SwingUtilities.invokeLater(new Runnable() {
@@ -107,6 +236,7 @@ public abstract class AppWindow extends JFrame {
             public void run() {
                 setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
                 drawingPanel = new DrawingPanel();
+                drawingPanel.setCommitOnDraw(false);
                 add(drawingPanel);
                 if (isFullScreen) {
                     setExtendedState(JFrame.MAXIMIZED_BOTH);
@@ -123,7 +253,17 @@ public abstract class AppWindow extends JFrame {
                 });
                 setup();
                 setLocationRelativeTo(null);
+                if (rendering != Rendering.PASSIVE) {
+                    setIgnoreRepaint(true);
+                    drawingPanel.setIgnoreRepaint(true);
+                }
                 setVisible(true);
+                if (rendering != Rendering.PASSIVE) {
+                    createBufferStrategy(rendering.getBuffers());
+                    drawingPanel.setActivelyRendered(true);
+                    bufferStrategy = getBufferStrategy();
+                }
+                animating = true;
                 (new Repainter(self, repaintDelay)).execute();
                 (new Animator(self)).execute();
             }
@@ -137,13 +277,114 @@ public abstract class AppWindow extends JFrame {
         this.dispatchEvent(new WindowEvent(this, WindowEvent.WINDOW_CLOSING));
     }
 
-    private void repaintOnEDT() {
-        SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                repaint();
+    /**
+     * <p>Repaint the regions of the drawing panel that have changed</p>
+     *
+     * <p>Both the repainter and the control loop request repaints. If a repaint is already waiting to run on the event
+     * dispatch thread (or, when rendering actively, is already being rendered by another thread), the request is
+     * merged into it (it will repaint everything that has changed by the time it runs), so that at most one repaint
+     * is ever in flight.</p>
+     *
+     * <p>Optionally (see {@link #setFullRepaintInterval(long)}), the whole window is repainted every so often as well,
+     * so that changes that the drawing panel was not told about (e.g. to a {@code Shape} returned by
+     * {@link org.gannacademy.cdf.graphics.Drawable#getShape()}) and other Swing components in the window are still
+     * drawn.</p>
+     *
+     * <p>Changes made on the event dispatch thread (e.g. by mouse and keyboard listeners) are committed there, before
+     * the repaint, rather than by the control loop, so that they are never copied partway through.</p>
+     *
+     * @see DrawingPanel#repaintDamage()
+     * @see DrawingPanel#commit()
+     */
+    private void requestRepaint() {
+        repaintRequests.incrementAndGet();
+        if (repaintPending.compareAndSet(false, true)) {
+            if (bufferStrategy != null) {
+                if (commitPending.compareAndSet(false, true)) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            commitPending.set(false);
+                            drawingPanel.commit();
+                        }
+                    });
+                }
+                try {
+                    render(bufferStrategy);
+                } finally {
+                    repaintPending.set(false);
+                }
+            } else {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        repaintPending.set(false);
+                        drawingPanel.commit();
+                        drawingPanel.repaintDamage();
+                        long interval = fullRepaintInterval, now = System.nanoTime();
+                        if (interval >= 0 && now - lastFullRepaint >= interval * 1_000_000) {
+                            lastFullRepaint = now;
+                            repaint();
+                        }
+                    }
+                });
             }
-        });
+        } else {
+            coalescedRepaints.incrementAndGet();
+        }
+    }
+
+    /**
+     * Actively render a complete frame of the drawing panel into the page-flipping buffers and show it
+     *
+     * @param strategy page-flipping buffers
+     */
+    private void render(BufferStrategy strategy) {
+        if (closed) {
+            return;
+        }
+        try {
+            do {
+                do {
+                    Graphics2D graphics = (Graphics2D) strategy.getDrawGraphics();
+                    try {
+                        Point origin = SwingUtilities.convertPoint(drawingPanel, 0, 0, this);
+                        graphics.translate(origin.x, origin.y);
+                        graphics.clipRect(0, 0, drawingPanel.getWidth(), drawingPanel.getHeight());
+                        drawingPanel.renderFrame(graphics);
+                    } finally {
+                        graphics.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+            Toolkit.getDefaultToolkit().sync();
+        } catch (IllegalStateException e) {
+            // the window was disposed while rendering
+        }
+    }
+
+    /**
+     * Number of repaints requested by the repainter and the control loop since the window opened
+     *
+     * @return Number of repaint requests
+     * @see #getCoalescedRepaintCount()
+     */
+    public long getRepaintRequestCount() {
+        return repaintRequests.get();
+    }
+
+    /**
+     * <p>Number of repaint requests that were merged into an already-pending repaint</p>
+     *
+     * <p>A high ratio of coalesced requests to total requests indicates that repaints are being requested much more
+     * often than the screen can be repainted.</p>
+     *
+     * @return Number of coalesced repaint requests
+     * @see #getRepaintRequestCount()
+     */
+    public long getCoalescedRepaintCount() {
+        return coalescedRepaints.get();
     }
 
     private static class Animator extends SwingWorker<Void, Void> {
@@ -156,12 +397,61 @@ public abstract class AppWindow extends JFrame {
 
         @Override
         protected Void doInBackground() throws Exception {
-            while (!window.closed && !window.done()) {
-                window.loop();
-                window.repaintOnEDT();
+            try {
+                while (!window.closed && !window.done()) {
+                    if (window.ticksPerSecond > 0) {
+                        runFixedTimestep();
+                    } else {
+                        window.loop();
+                        window.drawingPanel.commit();
+                        window.requestRepaint();
+                    }
+                }
+            } finally {
+                window.animating = false;
             }
             return null;
         }
+
+        /**
+         * <p>Call {@link AppWindow#loop()} at a fixed rate until the window closes, the control loop is done, or the
+         * fixed timestep is disabled</p>
+         *
+         * <p>Each frame runs as many ticks as have come due since the last frame (up to the maximum number of catch-up
+         * ticks, after which any remaining backlog is dropped), passes the fraction of a tick that has elapsed since
+         * the last tick to {@link AppWindow#interpolate(double)}, requests a single repaint, and then sleeps until the
+         * next tick is due.</p>
+         */
+        private void runFixedTimestep() {
+            long previous = System.nanoTime(), lag = 0;
+            double ticksPerSecond;
+            while (!window.closed && !window.done() && (ticksPerSecond = window.ticksPerSecond) > 0) {
+                long tick = (long) (1_000_000_000 / ticksPerSecond);
+                long now = System.nanoTime();
+                lag += now - previous;
+                previous = now;
+
+                int ticks = 0;
+                while (lag >= tick && ticks < window.maxCatchUpTicks && !window.done()) {
+                    window.loop();
+                    lag -= tick;
+                    ticks++;
+                }
+                if (lag >= tick) {
+                    lag %= tick;
+                }
+
+                window.interpolate((double) lag / tick);
+                window.drawingPanel.commit();
+                window.requestRepaint();
+
+                long deadline = now + tick - lag;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0 && !window.closed) {
+                    LockSupport.parkNanos(remaining);
+                }
+            }
+        }
     }
 
     private static class Repainter extends SwingWorker<Void, Void> {
@@ -176,7 +466,12 @@ public abstract class AppWindow extends JFrame {
         @Override
         protected Void doInBackground() throws Exception {
             while (!window.closed) {
-                window.repaintOnEDT();
+                if (!window.animating) {
+                    window.drawingPanel.commit();
+                    window.requestRepaint();
+                } else if (window.bufferStrategy == null) {
+                    window.requestRepaint(); // when rendering actively, the control loop renders every frame itself
+                }
                 Thread.sleep(delay);
             }
             return null;
@@ -184,6 +479,11 @@ public abstract class AppWindow extends JFrame {
 
         @Override
         protected void done() {
+            BufferStrategy strategy = window.bufferStrategy;
+            window.bufferStrategy = null;
+            if (strategy != null) {
+                strategy.dispose();
+            }
             window.dispose();
         }
     }
@@ -248,6 +548,90 @@ public abstract class AppWindow extends JFrame {
     protected void loop() {
     }
 
+    /**
+     * <p>Run the control loop at a fixed rate</p>
+     *
+     * <p>By default, {@link #loop()} is called again as soon as it returns, and it is up to {@code loop()} to
+     * {@link #sleep(long)} to pace an animation. With a fixed timestep, {@code loop()} is instead called exactly
+     * {@code ticksPerSecond} times per second, so that each call can advance the animation by the same amount of
+     * time, no matter how fast the computer is. If the computer falls behind, {@code loop()} is called several times
+     * in a row to catch up (see {@link #setMaxCatchUpTicks(int)}), and the drawing panel is repainted once per frame
+     * rather than once per tick.</p>
+     *
+     * <p>This method may be called from {@link #setup()} or at any time afterwards.</p>
+     *
+     * @param ticksPerSecond number of calls to {@code loop()} per second, or {@code 0} to disable the fixed timestep
+     * @see #interpolate(double)
+     */
+    protected void setTicksPerSecond(double ticksPerSecond) {
+        this.ticksPerSecond = Math.max(0, ticksPerSecond);
+    }
+
+    /**
+     * Fixed rate of the control loop
+     *
+     * @return Number of calls to {@link #loop()} per second, or {@code 0} if there is no fixed timestep
+     * @see #setTicksPerSecond(double)
+     */
+    public double getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+
+    /**
+     * <p>Choose how often the whole window is repainted</p>
+     *
+     * <p>Normally, only the regions of the drawing panel in which drawable components have changed are repainted.
+     * Changes that the drawing panel is not told about, however (e.g. changes to a {@code Shape} returned by
+     * {@link org.gannacademy.cdf.graphics.Drawable#getShape()}, or to other Swing components in the window), only
+     * appear when the whole window is repainted. By default, the whole window is only repainted when Swing asks for it
+     * (e.g. when the window is resized); set an interval to also repaint it at least this often.</p>
+     *
+     * @param fullRepaintInterval in milliseconds, {@code 0} to repaint the whole window every time, or a negative value
+     *                            to repaint only the regions that have changed
+     */
+    public void setFullRepaintInterval(long fullRepaintInterval) {
+        this.fullRepaintInterval = fullRepaintInterval;
+    }
+
+    /**
+     * How often the whole window is repainted
+     *
+     * @return Interval between repaints of the whole window, in milliseconds (or a negative value if only the regions
+     * that have changed are repainted)
+     * @see #setFullRepaintInterval(long)
+     */
+    public long getFullRepaintInterval() {
+        return fullRepaintInterval;
+    }
+
+    /**
+     * <p>Limit how far the fixed timestep control loop will try to catch up when it falls behind</p>
+     *
+     * <p>If {@link #loop()} takes longer than a tick to run, calling it repeatedly to catch up would only put the
+     * control loop further behind. Instead, at most {@code maxCatchUpTicks} ticks are run before each repaint, and any
+     * remaining backlog is dropped (the animation slows down rather than freezing).</p>
+     *
+     * @param maxCatchUpTicks maximum number of consecutive calls to {@code loop()} per frame (at least 1)
+     * @see #setTicksPerSecond(double)
+     */
+    protected void setMaxCatchUpTicks(int maxCatchUpTicks) {
+        this.maxCatchUpTicks = Math.max(1, maxCatchUpTicks);
+    }
+
+    /**
+     * <p>Override this method to smooth animations between fixed timestep ticks</p>
+     *
+     * <p>When the control loop runs with a fixed timestep (see {@link #setTicksPerSecond(double)}), the screen may be
+     * repainted partway between two ticks. This method is called before each repaint with the fraction of a tick
+     * that has elapsed since the most recent call to {@link #loop()}, so that drawing components may be positioned
+     * between their previous and next positions. By default, this method does nothing.</p>
+     *
+     * @param alpha fraction of a tick elapsed since the last tick, from {@code 0} (inclusive) to {@code 1}
+     *              (exclusive)
+     */
+    protected void interpolate(double alpha) {
+    }
+
     /**
      * <p>Override this method to set the condition that ends the control loop</p>
      *
@@ -0,0 +1,427 @@
+package org.gannacademy.cdf.graphics.ui;
+
+import org.gannacademy.cdf.graphics.Drawable;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * <p>An ordered collection of drawable components</p>
+ *
+ * <p>A display list keeps track of the order in which drawable components should be drawn (oldest to newest, with the
+ * newest in front), much as a {@link java.util.Stack} would. Unlike a stack, each component is indexed as it is
+ * added, so that adding, removing, looking up and moving a component to the front or back of the list all take the
+ * same (constant) amount of time, no matter how many components are in the list.</p>
+ *
+ * <p>Components are grouped into layers by their Z-index: every component in a layer with a higher Z-index is drawn
+ * in front of every component in a layer with a lower Z-index. Within a layer, components are drawn oldest to newest.
+ * Components are added to the layer with Z-index {@value #DEFAULT_Z} unless otherwise specified. Layers are kept
+ * sorted as they are created, so moving a component between layers takes time proportional to the logarithm of the
+ * number of layers, and iterating over the list never requires sorting.</p>
+ *
+ * <p>A component may only appear once in a display list.</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ */
+public class DisplayList implements Iterable<Drawable> {
+
+  /**
+   * Defaults to adding components to layer {@value #DEFAULT_Z}
+   */
+  public static final int DEFAULT_Z = 0;
+
+  /**
+   * <p>Link in the chain of components within a layer, from back to front</p>
+   *
+   * <p>The committed and painted bounds of a node are guarded by the node's own lock, so that they may be read and
+   * updated while drawing without holding a lock on the entire list.</p>
+   */
+  static class Node {
+    final Drawable component;
+    Layer layer;
+    Node previous, next;
+
+    /**
+     * Rendered bounds of the component when it was last drawn (valid only if it has been drawn)
+     */
+    final Rectangle2D.Double painted = new Rectangle2D.Double();
+    boolean isPainted = false;
+
+    /**
+     * Rendered bounds of the component as of its most recent commit
+     */
+    private final Rectangle2D.Double bounds = new Rectangle2D.Double();
+
+    /**
+     * Has the component changed since its state was last committed? (Guarded by the lock of the drawing panel rather
+     * than the node)
+     */
+    boolean dirty = false;
+
+    /**
+     * Thread that most recently changed the component, if it has changed since it was last committed (guarded by the
+     * lock of the drawing panel)
+     */
+    Thread writer = null;
+
+    /**
+     * Rendered bounds of the component as of its most recent commit (read from the committed state, never from the
+     * component itself, which may be changing on another thread)
+     *
+     * @return Rendered bounds of the component, or {@code null} if it has never been committed (and so is not drawn)
+     * @see Drawable#getCommittedBounds(Rectangle2D)
+     */
+    Rectangle2D bounds() {
+      return component.getCommittedBounds(bounds) ? bounds : null;
+    }
+
+    /**
+     * Record the rendered bounds at which the component has just been drawn
+     *
+     * @param bounds at which the component was drawn (as returned by {@link #bounds()})
+     */
+    void painted(Rectangle2D bounds) {
+      painted.setRect(bounds);
+      isPainted = true;
+    }
+
+    Node(Drawable component) {
+      this.component = component;
+    }
+  }
+
+  /**
+   * Chain of components sharing a Z-index
+   */
+  private static class Layer {
+    final int z;
+    Node back, front;
+
+    Layer(int z) {
+      this.z = z;
+    }
+  }
+
+  /**
+   * Index of components to their position in the chain
+   */
+  private final Map<Drawable, Node> nodes = new HashMap<>();
+
+  /**
+   * Non-empty layers, sorted by Z-index
+   */
+  private final TreeMap<Integer, Layer> layers = new TreeMap<>();
+
+  /**
+   * Count of structural changes, to detect modification while iterating (and to let readers on other threads know
+   * that the list has changed)
+   */
+  private volatile int modifications = 0;
+
+  /**
+   * Add a component to the front of the default layer
+   *
+   * @param component to add
+   * @return {@code true} if the component was added, {@code false} if it was already present
+   * @see #DEFAULT_Z
+   */
+  public boolean add(Drawable component) {
+    return add(component, DEFAULT_Z);
+  }
+
+  /**
+   * Add a component to the front of a layer
+   *
+   * @param component to add
+   * @param z         index of layer
+   * @return {@code true} if the component was added, {@code false} if it was already present
+   */
+  public boolean add(Drawable component, int z) {
+    if (nodes.containsKey(component)) {
+      return false;
+    }
+    Node node = new Node(component);
+    nodes.put(component, node);
+    linkFront(node, layer(z));
+    modifications++;
+    return true;
+  }
+
+  /**
+   * Remove a component from the list
+   *
+   * @param component to remove
+   * @return {@code true} if the component was present and removed, {@code false} otherwise
+   */
+  public boolean remove(Drawable component) {
+    Node node = nodes.remove(component);
+    if (node == null) {
+      return false;
+    }
+    unlink(node);
+    modifications++;
+    return true;
+  }
+
+  /**
+   * Test if a component is in the list
+   *
+   * @param component to test
+   * @return {@code true} if the component is present, {@code false} otherwise
+   */
+  public boolean contains(Drawable component) {
+    return nodes.containsKey(component);
+  }
+
+  /**
+   * Z-index of the layer containing a component
+   *
+   * @param component to look up
+   * @return Z-index of the component's layer, or {@code null} if the component is not present
+   */
+  public Integer getZ(Drawable component) {
+    Node node = nodes.get(component);
+    return node == null ? null : node.layer.z;
+  }
+
+  /**
+   * <p>Move a component to a different layer</p>
+   *
+   * <p>The component is placed in front of all other components already in that layer.</p>
+   *
+   * @param component to move
+   * @param z         index of layer
+   * @return {@code true} if the component is present (and was moved), {@code false} otherwise
+   */
+  public boolean setZ(Drawable component, int z) {
+    Node node = nodes.get(component);
+    if (node == null) {
+      return false;
+    }
+    if (node.layer.z != z) {
+      unlink(node);
+      linkFront(node, layer(z));
+      modifications++;
+    }
+    return true;
+  }
+
+  /**
+   * Move a component in front of all other components in its layer
+   *
+   * @param component to move
+   * @return {@code true} if the component is present (and was moved), {@code false} otherwise
+   */
+  public boolean bringToFront(Drawable component) {
+    Node node = nodes.get(component);
+    if (node == null) {
+      return false;
+    }
+    if (node != node.layer.front) {
+      Layer layer = node.layer;
+      unlink(node);
+      linkFront(node, layer(layer.z));
+      modifications++;
+    }
+    return true;
+  }
+
+  /**
+   * Move a component behind all other components in its layer
+   *
+   * @param component to move
+   * @return {@code true} if the component is present (and was moved), {@code false} otherwise
+   */
+  public boolean sendToBack(Drawable component) {
+    Node node = nodes.get(component);
+    if (node == null) {
+      return false;
+    }
+    if (node != node.layer.back) {
+      Layer layer = node.layer;
+      unlink(node);
+      linkBack(node, layer(layer.z));
+      modifications++;
+    }
+    return true;
+  }
+
+  /**
+   * Frontmost component
+   *
+   * @return The frontmost component of the frontmost layer, or {@code null} if the list is empty
+   */
+  public Drawable peek() {
+    return layers.isEmpty() ? null : layers.lastEntry().getValue().front.component;
+  }
+
+  /**
+   * Number of components in the list
+   *
+   * @return Number of components in the list
+   */
+  public int size() {
+    return nodes.size();
+  }
+
+  /**
+   * Test if the list is empty
+   *
+   * @return {@code true} if there are no components in the list, {@code false} otherwise
+   */
+  public boolean isEmpty() {
+    return nodes.isEmpty();
+  }
+
+  /**
+   * Remove all components from the list
+   */
+  public void clear() {
+    nodes.clear();
+    layers.clear();
+    modifications++;
+  }
+
+  /**
+   * Copy of the list contents
+   *
+   * @return Components in the list, in drawing order (back to front)
+   */
+  public Drawable[] toArray() {
+    Drawable[] array = new Drawable[nodes.size()];
+    int i = 0;
+    for (Layer layer : layers.values()) {
+      for (Node node = layer.back; node != null; node = node.next) {
+        array[i++] = node.component;
+      }
+    }
+    return array;
+  }
+
+  /**
+   * Iterate over the components in drawing order
+   *
+   * @return Iterator over components, from back to front
+   */
+  @Override
+  public Iterator<Drawable> iterator() {
+    return new Iterator<Drawable>() {
+      private final Iterator<Layer> remaining = layers.values().iterator();
+      private Node next = remaining.hasNext() ? remaining.next().back : null;
+      private final int expectedModifications = modifications;
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Drawable next() {
+        if (modifications != expectedModifications) {
+          throw new ConcurrentModificationException();
+        }
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        Drawable component = next.component;
+        next = next.next;
+        if (next == null && remaining.hasNext()) {
+          next = remaining.next().back;
+        }
+        return component;
+      }
+    };
+  }
+
+  /**
+   * Index entry of a component
+   *
+   * @param component to look up
+   * @return Node containing the component, or {@code null} if the component is not present
+   */
+  Node node(Drawable component) {
+    return nodes.get(component);
+  }
+
+  /**
+   * Copy of the index entries of the list
+   *
+   * @return Nodes in the list, in drawing order (back to front)
+   */
+  Node[] toNodeArray() {
+    Node[] array = new Node[nodes.size()];
+    int i = 0;
+    for (Layer layer : layers.values()) {
+      for (Node node = layer.back; node != null; node = node.next) {
+        array[i++] = node;
+      }
+    }
+    return array;
+  }
+
+  /**
+   * Count of changes to the membership or order of the list
+   *
+   * @return Number of structural changes made since the list was created
+   */
+  int getModifications() {
+    return modifications;
+  }
+
+  private Layer layer(int z) {
+    Layer layer = layers.get(z);
+    if (layer == null) {
+      layer = new Layer(z);
+      layers.put(z, layer);
+    }
+    return layer;
+  }
+
+  private void linkFront(Node node, Layer layer) {
+    node.layer = layer;
+    node.previous = layer.front;
+    node.next = null;
+    if (layer.front == null) {
+      layer.back = node;
+    } else {
+      layer.front.next = node;
+    }
+    layer.front = node;
+  }
+
+  private void linkBack(Node node, Layer layer) {
+    node.layer = layer;
+    node.previous = null;
+    node.next = layer.back;
+    if (layer.back == null) {
+      layer.front = node;
+    } else {
+      layer.back.previous = node;
+    }
+    layer.back = node;
+  }
+
+  private void unlink(Node node) {
+    Layer layer = node.layer;
+    if (node.previous == null) {
+      layer.back = node.next;
+    } else {
+      node.previous.next = node.next;
+    }
+    if (node.next == null) {
+      layer.front = node.previous;
+    } else {
+      node.next.previous = node.previous;
+    }
+    if (layer.back == null) {
+      layers.remove(layer.z);
+    }
+    node.layer = null;
+    node.previous = node.next = null;
+  }
+}
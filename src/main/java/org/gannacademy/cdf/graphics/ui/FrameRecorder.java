@@ -0,0 +1,362 @@
+package org.gannacademy.cdf.graphics.ui;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>Record a sequence of frames drawn by a {@link DrawingPanel}</p>
+ *
+ * <p>Each call to {@link #capture()} renders the drawing panel into one of a fixed pool of reusable frame buffers and
+ * hands it to background threads to be encoded, so that recording costs the animation loop no more than rendering the
+ * frame. Frames are written either as a numbered sequence of PNG files (encoded in parallel, one thread per processor)
+ * or as a single stream of raw pixels (which is much faster to write, for conversion to video afterwards).</p>
+ *
+ * <p>If frames are captured faster than they can be encoded, the pool of frame buffers runs out. Rather than stall the
+ * animation loop, {@link #capture()} then skips the frame (and counts it as dropped) until a buffer has been freed; to
+ * record every frame instead, use {@link #captureAndWait()}, which waits for a free buffer.</p>
+ *
+ * <p>A recorder must be closed to finish writing the frames that are still queued. Frames captured after the recorder
+ * has been closed are not recorded.</p>
+ *
+ * <p>If a frame cannot be encoded, the remaining frames are discarded, and the failure is thrown by the next call to
+ * {@link #capture()}, {@link #captureAndWait()} or {@link #close()}.</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ */
+public class FrameRecorder implements AutoCloseable {
+
+  /**
+   * Defaults to 8 frame buffers, so that up to 8 frames may be waiting to be encoded
+   */
+  public static final int DEFAULT_BUFFER_COUNT = 8;
+
+  /**
+   * Output formats
+   */
+  public enum Format {
+    /**
+     * Numbered PNG files ({@code frame-000000.png}, {@code frame-000001.png}, etc.)
+     */
+    PNG_SEQUENCE,
+
+    /**
+     * Uncompressed stream of frames, each {@code width × height} pixels of 4 bytes (alpha, red, green, blue), from left
+     * to right and top to bottom
+     */
+    RAW
+  }
+
+  private final DrawingPanel drawingPanel;
+  private final Format format;
+  private final File directory;
+  private final OutputStream stream;
+  private final int width, height;
+
+  /**
+   * Frame buffers ready to be rendered into
+   */
+  private final BlockingQueue<BufferedImage> free;
+
+  /**
+   * A rendered frame buffer and its position in the recording
+   */
+  private static class Frame {
+    final BufferedImage image;
+    final long index;
+
+    Frame(BufferedImage image, long index) {
+      this.image = image;
+      this.index = index;
+    }
+  }
+
+  /**
+   * Rendered frames waiting to be encoded (an empty frame tells an encoder thread that the recording has ended)
+   */
+  private final BlockingQueue<Frame> queued;
+  private static final Frame END = new Frame(null, -1);
+
+  private final Thread[] encoders;
+  private final AtomicLong captured = new AtomicLong(), dropped = new AtomicLong();
+  private volatile Throwable failure = null;
+
+  /**
+   * Has the recorder been closed? (Captures hold the read lock, so that no frame is queued after the encoders have
+   * been told that the recording has ended)
+   */
+  private volatile boolean closed = false;
+  private final ReadWriteLock closing = new ReentrantReadWriteLock();
+
+  /**
+   * Have the encoders finished and the output been closed?
+   */
+  private boolean finished = false;
+
+  /**
+   * Record a sequence of PNG files
+   *
+   * @param drawingPanel to record
+   * @param width        of each frame
+   * @param height       of each frame
+   * @param directory    in which to write the frames (created if necessary)
+   * @return New recorder
+   * @throws IOException              if the directory cannot be created
+   * @throws IllegalArgumentException if {@code directory} is {@code null}
+   */
+  public static FrameRecorder pngSequence(DrawingPanel drawingPanel, int width, int height, File directory) throws IOException {
+    if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create directory " + directory);
+    }
+    return new FrameRecorder(drawingPanel, width, height, Format.PNG_SEQUENCE, directory, null, DEFAULT_BUFFER_COUNT);
+  }
+
+  /**
+   * Record a stream of raw pixels
+   *
+   * @param drawingPanel to record
+   * @param width        of each frame
+   * @param height       of each frame
+   * @param stream       to which to write the frames (closed when the recorder is closed)
+   * @return New recorder
+   * @throws IllegalArgumentException if {@code stream} is {@code null}
+   * @see Format#RAW
+   */
+  public static FrameRecorder rawStream(DrawingPanel drawingPanel, int width, int height, OutputStream stream) {
+    return new FrameRecorder(drawingPanel, width, height, Format.RAW, null,
+            stream == null ? null : new BufferedOutputStream(stream, 1 << 16), DEFAULT_BUFFER_COUNT);
+  }
+
+  /**
+   * Construct a new frame recorder
+   *
+   * @param drawingPanel to record
+   * @param width        of each frame
+   * @param height       of each frame
+   * @param format       of output
+   * @param directory    in which to write PNG files (ignored unless {@code format} is {@link Format#PNG_SEQUENCE})
+   * @param stream       to which to write raw pixels (ignored unless {@code format} is {@link Format#RAW})
+   * @param bufferCount  number of frame buffers to allocate (the most frames that may be waiting to be encoded)
+   * @throws IllegalArgumentException if {@code format} is {@link Format#PNG_SEQUENCE} and {@code directory} is {@code
+   *                                  null}, if {@code format} is {@link Format#RAW} and {@code stream} is {@code
+   *                                  null}, or if {@code bufferCount} is less than one
+   */
+  public FrameRecorder(DrawingPanel drawingPanel, int width, int height, Format format, File directory, OutputStream stream, int bufferCount) {
+    if (format == Format.PNG_SEQUENCE && directory == null) {
+      throw new IllegalArgumentException("A directory is required to record a sequence of PNG files");
+    }
+    if (format == Format.RAW && stream == null) {
+      throw new IllegalArgumentException("A stream is required to record raw pixels");
+    }
+    if (bufferCount < 1) {
+      throw new IllegalArgumentException("At least one frame buffer is required");
+    }
+    this.drawingPanel = drawingPanel;
+    this.width = width;
+    this.height = height;
+    this.format = format;
+    this.directory = directory;
+    this.stream = stream;
+    free = new ArrayBlockingQueue<>(bufferCount);
+    for (int i = 0; i < bufferCount; i++) {
+      free.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+    }
+    encoders = new Thread[format == Format.RAW ? 1 : Math.min(bufferCount, Runtime.getRuntime().availableProcessors())];
+    queued = new ArrayBlockingQueue<>(bufferCount + encoders.length);
+    for (int i = 0; i < encoders.length; i++) {
+      encoders[i] = new Thread(this::encode, "FrameRecorder encoder " + i);
+      encoders[i].setDaemon(true);
+      encoders[i].start();
+    }
+  }
+
+  /**
+   * <p>Capture the current frame, unless all frame buffers are waiting to be encoded</p>
+   *
+   * <p>This method never waits: if there is no free frame buffer, the frame is dropped.</p>
+   *
+   * @return {@code true} if the frame was captured, {@code false} if it was dropped (or the recorder has been closed)
+   * @throws IllegalStateException if an earlier frame could not be encoded
+   */
+  public boolean capture() {
+    closing.readLock().lock();
+    try {
+      checkFailure();
+      BufferedImage frame = closed ? null : free.poll();
+      if (frame == null) {
+        dropped.incrementAndGet();
+        return false;
+      }
+      return capture(frame);
+    } finally {
+      closing.readLock().unlock();
+    }
+  }
+
+  /**
+   * Capture the current frame, waiting for a free frame buffer if necessary
+   *
+   * @return {@code true} if the frame was captured, {@code false} if the recorder has been closed (or the calling
+   * thread was interrupted while waiting)
+   * @throws IllegalStateException if an earlier frame could not be encoded
+   */
+  public boolean captureAndWait() {
+    closing.readLock().lock();
+    try {
+      checkFailure();
+      if (closed) {
+        return false;
+      }
+      return capture(free.take());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      closing.readLock().unlock();
+    }
+  }
+
+  private boolean capture(BufferedImage image) {
+    try {
+      drawingPanel.render(image);
+    } catch (RuntimeException | Error e) {
+      free.add(image);
+      throw e;
+    }
+    queued.add(new Frame(image, captured.getAndIncrement()));
+    return true;
+  }
+
+  /**
+   * Throw the failure of an encoder thread, if any
+   *
+   * @throws IllegalStateException if a frame could not be encoded
+   */
+  private void checkFailure() {
+    Throwable failure = this.failure;
+    if (failure != null) {
+      throw new IllegalStateException("Could not encode frame", failure);
+    }
+  }
+
+  /**
+   * Encode frames as they are queued, returning buffers to the pool as they are written (once any frame has failed to
+   * encode, the rest are discarded, but their buffers are still returned, so that no capture waits forever)
+   */
+  private void encode() {
+    byte[] row = new byte[width * 4];
+    int[] pixels = new int[width];
+    IntBuffer ints = ByteBuffer.wrap(row).asIntBuffer();
+    try {
+      for (Frame frame = queued.take(); frame != END; frame = queued.take()) {
+        try {
+          if (failure == null) {
+            if (format == Format.PNG_SEQUENCE) {
+              ImageIO.write(frame.image, "PNG", new File(directory, String.format("frame-%06d.png", frame.index)));
+            } else {
+              for (int y = 0; y < height; y++) {
+                frame.image.getRaster().getDataElements(0, y, width, 1, pixels);
+                ints.clear();
+                ints.put(pixels);
+                stream.write(row);
+              }
+            }
+          }
+        } catch (IOException | RuntimeException | Error e) {
+          failure = e;
+        } finally {
+          free.add(frame.image);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Number of frames captured
+   *
+   * @return Number of frames captured (including any still waiting to be encoded)
+   */
+  public long getCapturedFrameCount() {
+    return captured.get();
+  }
+
+  /**
+   * Number of frames dropped
+   *
+   * @return Number of calls to {@link #capture()} that found no free frame buffer
+   */
+  public long getDroppedFrameCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Number of frames waiting to be encoded
+   *
+   * @return Number of frames captured but not yet encoded
+   */
+  public int getQueuedFrameCount() {
+    return queued.size();
+  }
+
+  /**
+   * <p>Finish encoding all captured frames and close the output</p>
+   *
+   * <p>If the calling thread is interrupted while waiting for the frames to be encoded, the output is left open (the
+   * frames still queued continue to be encoded into it), and closing the recorder again finishes the job.</p>
+   *
+   * @throws InterruptedIOException if the calling thread was interrupted while waiting for the frames to be encoded
+   *                                (its interrupt status is set)
+   * @throws IOException            if any frame could not be written
+   * @throws IllegalStateException  if any frame could not be encoded for another reason
+   */
+  @Override
+  public void close() throws IOException {
+    closing.writeLock().lock();
+    try {
+      if (!closed) {
+        closed = true;
+        for (int i = 0; i < encoders.length; i++) {
+          queued.add(END);
+        }
+      }
+    } finally {
+      closing.writeLock().unlock();
+    }
+    try {
+      for (Thread encoder : encoders) {
+        encoder.join();
+      }
+    } catch (InterruptedException e) {
+      // don't close the output while the encoders may still be writing to it
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for frames to be encoded");
+    }
+    synchronized (this) {
+      if (finished) {
+        return;
+      }
+      finished = true;
+    }
+    if (stream != null) {
+      stream.close();
+    }
+    Throwable failure = this.failure;
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    }
+    checkFailure();
+  }
+}
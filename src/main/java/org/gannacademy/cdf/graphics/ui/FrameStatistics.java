@@ -0,0 +1,112 @@
+package org.gannacademy.cdf.graphics.ui;
+
+/**
+ * <p>Timing statistics for frames drawn by a {@link DrawingPanel}</p>
+ *
+ * <p>Two measurements are collected for each frame: the frame time (how long it took to draw the frame) and the frame
+ * interval (how long it has been since the previous frame was drawn). A steady animation has a consistent frame
+ * interval &mdash; the jitter (standard deviation of the frame interval) measures how far from steady it is.</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ */
+public class FrameStatistics {
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+  private long frames = 0;
+  private long totalFrameTime = 0, maxFrameTime = 0;
+  private long previousFrameStart = 0, intervals = 0;
+  private double totalInterval = 0, totalSquaredInterval = 0;
+
+  /**
+   * Record a frame
+   *
+   * @param start of frame, in nanoseconds (as reported by {@link System#nanoTime()})
+   * @param end   of frame, in nanoseconds
+   */
+  public synchronized void record(long start, long end) {
+    long frameTime = end - start;
+    frames++;
+    totalFrameTime += frameTime;
+    maxFrameTime = Math.max(maxFrameTime, frameTime);
+    if (previousFrameStart != 0) {
+      double interval = start - previousFrameStart;
+      intervals++;
+      totalInterval += interval;
+      totalSquaredInterval += interval * interval;
+    }
+    previousFrameStart = start;
+  }
+
+  /**
+   * Discard all recorded frames
+   */
+  public synchronized void reset() {
+    frames = totalFrameTime = maxFrameTime = previousFrameStart = intervals = 0;
+    totalInterval = totalSquaredInterval = 0;
+  }
+
+  /**
+   * Number of frames recorded
+   *
+   * @return Number of frames recorded
+   */
+  public synchronized long getFrameCount() {
+    return frames;
+  }
+
+  /**
+   * Average time to draw a frame
+   *
+   * @return Average frame time in milliseconds
+   */
+  public synchronized double getAverageFrameTime() {
+    return frames == 0 ? 0 : totalFrameTime / NANOS_PER_MILLI / frames;
+  }
+
+  /**
+   * Longest time to draw a frame
+   *
+   * @return Maximum frame time in milliseconds
+   */
+  public synchronized double getMaxFrameTime() {
+    return maxFrameTime / NANOS_PER_MILLI;
+  }
+
+  /**
+   * Average time between the start of consecutive frames
+   *
+   * @return Average frame interval in milliseconds
+   */
+  public synchronized double getAverageFrameInterval() {
+    return intervals == 0 ? 0 : totalInterval / NANOS_PER_MILLI / intervals;
+  }
+
+  /**
+   * Standard deviation of the time between the start of consecutive frames
+   *
+   * @return Frame interval jitter in milliseconds
+   */
+  public synchronized double getFrameIntervalJitter() {
+    if (intervals == 0) {
+      return 0;
+    }
+    double mean = totalInterval / intervals;
+    return Math.sqrt(Math.max(0, totalSquaredInterval / intervals - mean * mean)) / NANOS_PER_MILLI;
+  }
+
+  /**
+   * Average number of frames per second
+   *
+   * @return Frames per second, based on the average frame interval
+   */
+  public synchronized double getFramesPerSecond() {
+    double interval = getAverageFrameInterval();
+    return interval == 0 ? 0 : 1000 / interval;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%d frames, %.1f fps, frame time %.2f ms avg / %.2f ms max, interval jitter %.2f ms",
+            frames, getFramesPerSecond(), getAverageFrameTime(), getMaxFrameTime(), getFrameIntervalJitter());
+  }
+}
@@ -0,0 +1,580 @@
+package org.gannacademy.cdf.graphics.ui;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * <p>Write PNG files, compressing bands of rows in parallel</p>
+ *
+ * <p>Writing a large PNG file with {@link javax.imageio.ImageIO} is dominated by compressing the pixel data, which it
+ * does on a single thread. This encoder splits the image into bands of rows and filters and compresses each band on a
+ * separate thread of a {@link ForkJoinPool}, then stitches the compressed bands together into a single, standard PNG
+ * stream. (Each band is compressed with the end of the previous band as its dictionary, so splitting the image costs
+ * very little in file size.)</p>
+ *
+ * <p>Images too large to hold in memory can instead be written a strip of rows at a time (see {@link #open(OutputStream,
+ * int, int, boolean)}).</p>
+ *
+ * <p>Images are written as 8-bit RGB, or 8-bit RGBA if they have an alpha channel.</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ */
+public class PngEncoder {
+
+  /**
+   * Defaults to zlib compression level 6, balancing size against speed
+   */
+  public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+  private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+  private static final int COLOR_TYPE_RGB = 2, COLOR_TYPE_RGBA = 6;
+  private static final int FILTER_NONE = 0, FILTER_SUB = 1, FILTER_UP = 2, FILTER_AVERAGE = 3, FILTER_PAETH = 4;
+
+  /**
+   * Size of the deflate window: the most data that a band may refer back to in the previous band
+   */
+  private static final int WINDOW = 32 * 1024;
+
+  /**
+   * Least amount of (uncompressed) pixel data in each band, so that small images are not split needlessly
+   */
+  private static final int MIN_BAND_BYTES = 256 * 1024;
+
+  /**
+   * Largest IDAT chunk written by a {@link Writer}
+   */
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private static final int ADLER_BASE = 65521;
+
+  private final int compressionLevel;
+  private final ForkJoinPool pool;
+
+  /**
+   * Construct an encoder using the default compression level and the common fork-join pool
+   */
+  public PngEncoder() {
+    this(DEFAULT_COMPRESSION_LEVEL);
+  }
+
+  /**
+   * Construct an encoder using the common fork-join pool
+   *
+   * @param compressionLevel from {@link Deflater#BEST_SPEED} (1) to {@link Deflater#BEST_COMPRESSION} (9), or {@link
+   *                         Deflater#NO_COMPRESSION} (0)
+   */
+  public PngEncoder(int compressionLevel) {
+    this(compressionLevel, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Construct an encoder
+   *
+   * @param compressionLevel from {@link Deflater#BEST_SPEED} (1) to {@link Deflater#BEST_COMPRESSION} (9), or {@link
+   *                         Deflater#NO_COMPRESSION} (0)
+   * @param pool             of threads on which to compress bands
+   */
+  public PngEncoder(int compressionLevel, ForkJoinPool pool) {
+    if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Compression level must be between 0 and 9");
+    }
+    this.compressionLevel = compressionLevel;
+    this.pool = pool;
+  }
+
+  /**
+   * Compression level
+   *
+   * @return Compression level, from 0 (none) to 9 (best)
+   */
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  /**
+   * Write an image to a file
+   *
+   * @param image to write
+   * @param file  to write
+   * @throws IOException if the file cannot be written
+   */
+  public void write(BufferedImage image, File file) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+      write(image, out);
+    }
+  }
+
+  /**
+   * Write an image to a stream (which is not closed)
+   *
+   * @param image to write
+   * @param out   stream to which to write
+   * @throws IOException if the stream cannot be written
+   */
+  public void write(BufferedImage image, OutputStream out) throws IOException {
+    int width = image.getWidth(), height = image.getHeight();
+    boolean alpha = image.getColorModel().hasAlpha();
+    int bytesPerPixel = alpha ? 4 : 3;
+    int rowLength = 1 + width * bytesPerPixel;
+    int bandHeight = Math.max(MIN_BAND_BYTES / rowLength,
+            (height + pool.getParallelism() * 4 - 1) / (pool.getParallelism() * 4));
+    bandHeight = Math.max(1, Math.min(height, bandHeight));
+
+    List<Callable<Band>> tasks = new ArrayList<>();
+    for (int y = 0; y < height; y += bandHeight) {
+      int start = y, end = Math.min(height, y + bandHeight);
+      tasks.add(() -> compress(image, alpha, start, end, end == height));
+    }
+    List<Band> bands = new ArrayList<>();
+    try {
+      for (Future<Band> band : pool.invokeAll(tasks)) {
+        bands.add(band.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while compressing PNG", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Could not compress PNG", e.getCause());
+    }
+
+    DataOutputStream data = new DataOutputStream(out);
+    data.write(SIGNATURE);
+
+    writeHeader(data, width, height, alpha);
+
+    // zlib header: deflate with a 32K window, no preset dictionary
+    writeChunk(data, "IDAT", new byte[]{0x78, 0x01}, 2);
+    long adler = 1;
+    for (Band band : bands) {
+      adler = combineAdler32(adler, band.adler, band.length);
+      writeChunk(data, "IDAT", band.compressed.toByteArray(), band.compressed.size());
+    }
+    writeChunk(data, "IDAT", new byte[]{(byte) (adler >> 24), (byte) (adler >> 16), (byte) (adler >> 8), (byte) adler}, 4);
+    writeChunk(data, "IEND", new byte[0], 0);
+    data.flush();
+  }
+
+  /**
+   * <p>Start writing an image to a stream a few rows at a time</p>
+   *
+   * <p>Rather than requiring the whole image to be in memory at once, the returned writer accepts rows in order from
+   * any number of (smaller) images, e.g. horizontal strips of the image rendered one after another into the same
+   * buffer. Rows are filtered and compressed as they are written, on the calling thread, so memory use is bounded by
+   * the size of the strips, no matter how large the image.</p>
+   *
+   * @param out    stream to which to write (which is not closed)
+   * @param width  of the image
+   * @param height of the image
+   * @param alpha  include an alpha channel?
+   * @return Writer which must be sent exactly {@code height} rows, then closed
+   * @throws IOException if the stream cannot be written
+   */
+  public Writer open(OutputStream out, int width, int height, boolean alpha) throws IOException {
+    return new Writer(out, width, height, alpha, compressionLevel);
+  }
+
+  /**
+   * Writes an image to a stream as its rows become available
+   *
+   * @see #open(OutputStream, int, int, boolean)
+   */
+  public static class Writer implements Closeable {
+    private final DataOutputStream out;
+    private final int height;
+    private final RowFilter filter;
+    private final Deflater deflater;
+    private final byte[] row, chunk = new byte[CHUNK_SIZE];
+    private int chunkLength = 0, rows = 0;
+    private boolean closed = false;
+
+    private Writer(OutputStream out, int width, int height, boolean alpha, int compressionLevel) throws IOException {
+      this.out = new DataOutputStream(out);
+      this.height = height;
+      filter = new RowFilter(width, alpha);
+      row = new byte[filter.getFilteredLength()];
+      deflater = new Deflater(compressionLevel);
+      this.out.write(SIGNATURE);
+      writeHeader(this.out, width, height, alpha);
+    }
+
+    /**
+     * Write rows of an image
+     *
+     * @param image from which to read the rows (which must be as wide as the image being written)
+     * @param start first row of {@code image} to write
+     * @param end   row after the last row of {@code image} to write
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(BufferedImage image, int start, int end) throws IOException {
+      if (closed) {
+        throw new IOException("PNG writer has been closed");
+      }
+      if (rows + end - start > height) {
+        throw new IllegalArgumentException("Image is only " + height + " rows high");
+      }
+      for (int y = start; y < end; y++) {
+        filter.filter(image, y, row, 0);
+        deflater.setInput(row);
+        while (!deflater.needsInput()) {
+          deflate();
+        }
+        rows++;
+      }
+    }
+
+    /**
+     * Number of rows written
+     *
+     * @return Number of rows written so far
+     */
+    public int getRowCount() {
+      return rows;
+    }
+
+    /**
+     * Finish writing the image (the stream is not closed)
+     *
+     * @throws IOException if the stream cannot be written, or if fewer rows have been written than the height of the
+     *                     image
+     */
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        if (rows < height) {
+          throw new IOException("Only " + rows + " of " + height + " rows were written");
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+          deflate();
+        }
+        if (chunkLength > 0) {
+          writeChunk(out, "IDAT", chunk, chunkLength);
+        }
+        writeChunk(out, "IEND", new byte[0], 0);
+        out.flush();
+      } finally {
+        deflater.end();
+      }
+    }
+
+    /**
+     * Compress pending input into the current chunk, writing the chunk out when it is full
+     */
+    private void deflate() throws IOException {
+      chunkLength += deflater.deflate(chunk, chunkLength, chunk.length - chunkLength);
+      if (chunkLength == chunk.length) {
+        writeChunk(out, "IDAT", chunk, chunkLength);
+        chunkLength = 0;
+      }
+    }
+  }
+
+  /**
+   * Filtered and compressed rows of an image
+   */
+  private static class Band {
+    final ByteArrayOutputStream compressed;
+    final long adler;
+    final long length;
+
+    Band(ByteArrayOutputStream compressed, long adler, long length) {
+      this.compressed = compressed;
+      this.adler = adler;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Filter and compress a band of rows
+   *
+   * @param image from which to read rows
+   * @param alpha include the alpha channel?
+   * @param start first row of the band
+   * @param end   row after the last row of the band
+   * @param last  is this the last band of the image?
+   * @return Compressed band (raw deflate data, ending on a byte boundary unless it is the last band)
+   */
+  private Band compress(BufferedImage image, boolean alpha, int start, int end, boolean last) {
+    int rowLength = 1 + image.getWidth() * (alpha ? 4 : 3);
+    Deflater deflater = new Deflater(compressionLevel, true);
+    try {
+      if (start > 0) {
+        // the end of the previous band, which the compressed band may refer back to
+        int dictionaryRows = Math.min(start, (WINDOW + rowLength - 1) / rowLength);
+        byte[] previous = filter(image, alpha, start - dictionaryRows, start);
+        int length = Math.min(WINDOW, previous.length);
+        deflater.setDictionary(previous, previous.length - length, length);
+      }
+      byte[] filtered = filter(image, alpha, start, end);
+      Adler32 adler = new Adler32();
+      adler.update(filtered);
+      deflater.setInput(filtered);
+      if (last) {
+        deflater.finish();
+      }
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(filtered.length / 4 + 64);
+      byte[] buffer = new byte[64 * 1024];
+      int count;
+      do {
+        count = deflater.deflate(buffer, 0, buffer.length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+        compressed.write(buffer, 0, count);
+      } while (last ? !deflater.finished() : count == buffer.length);
+      return new Band(compressed, adler.getValue(), filtered.length);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Filter rows of an image, choosing the filter for each row that is likely to compress best
+   *
+   * @param image from which to read rows
+   * @param alpha include the alpha channel?
+   * @param start first row to filter
+   * @param end   row after the last row to filter
+   * @return Filtered rows, each preceded by its filter type
+   */
+  private static byte[] filter(BufferedImage image, boolean alpha, int start, int end) {
+    RowFilter filter = new RowFilter(image.getWidth(), alpha);
+    if (start > 0) {
+      filter.setPrevious(image, start - 1);
+    }
+    byte[] filtered = new byte[(end - start) * filter.getFilteredLength()];
+    for (int y = start, offset = 0; y < end; y++, offset += filter.getFilteredLength()) {
+      filter.filter(image, y, filtered, offset);
+    }
+    return filtered;
+  }
+
+  /**
+   * Filters consecutive rows of an image, remembering each row as the previous row for the next
+   */
+  private static class RowFilter {
+    private final int width, bytesPerPixel;
+    private final boolean alpha;
+    private final int[] pixels;
+    private byte[] previous, current, candidate, best;
+
+    RowFilter(int width, boolean alpha) {
+      this.width = width;
+      this.alpha = alpha;
+      bytesPerPixel = alpha ? 4 : 3;
+      int rowLength = width * bytesPerPixel;
+      pixels = new int[width];
+      previous = new byte[rowLength];
+      current = new byte[rowLength];
+      candidate = new byte[rowLength];
+      best = new byte[rowLength];
+    }
+
+    /**
+     * Length of a filtered row
+     *
+     * @return Length of a row of samples, plus its filter type
+     */
+    int getFilteredLength() {
+      return 1 + previous.length;
+    }
+
+    /**
+     * Use a row of an image as the previous row (rather than starting with a row of zeroes)
+     */
+    void setPrevious(BufferedImage image, int y) {
+      readRow(image, alpha, y, pixels, previous);
+    }
+
+    /**
+     * Filter a row of an image, choosing the filter that is likely to compress best
+     *
+     * @param image  from which to read the row
+     * @param y      coordinate of the row
+     * @param out    array into which to write the filter type, followed by the filtered row
+     * @param offset at which to start writing
+     */
+    void filter(BufferedImage image, int y, byte[] out, int offset) {
+      if (image.getWidth() != width) {
+        throw new IllegalArgumentException("Image width " + image.getWidth() + " does not match " + width);
+      }
+      readRow(image, alpha, y, pixels, current);
+      int bestFilter = FILTER_NONE;
+      long bestScore = Long.MAX_VALUE;
+      for (int type = FILTER_NONE; type <= FILTER_PAETH; type++) {
+        long score = applyFilter(type, current, previous, bytesPerPixel, candidate);
+        if (score < bestScore) {
+          bestScore = score;
+          bestFilter = type;
+          byte[] swap = best;
+          best = candidate;
+          candidate = swap;
+        }
+      }
+      out[offset] = (byte) bestFilter;
+      System.arraycopy(best, 0, out, offset + 1, best.length);
+      byte[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+  }
+
+  /**
+   * Read a row of pixels as 8-bit RGB or RGBA samples
+   */
+  private static void readRow(BufferedImage image, boolean alpha, int y, int[] pixels, byte[] row) {
+    int width = image.getWidth(), opaque = 0;
+    if (image.getType() == BufferedImage.TYPE_INT_ARGB || image.getType() == BufferedImage.TYPE_INT_RGB) {
+      // copied by the raster, which accounts for its offset and scanline stride (e.g. for a subimage)
+      image.getRaster().getDataElements(0, y, width, 1, pixels);
+      if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+        opaque = 0xff000000;
+      }
+    } else {
+      image.getRGB(0, y, width, 1, pixels, 0, width);
+    }
+    int i = 0;
+    for (int x = 0; x < width; x++) {
+      int pixel = pixels[x] | opaque;
+      row[i++] = (byte) (pixel >> 16);
+      row[i++] = (byte) (pixel >> 8);
+      row[i++] = (byte) pixel;
+      if (alpha) {
+        row[i++] = (byte) (pixel >>> 24);
+      }
+    }
+  }
+
+  /**
+   * Apply a PNG filter to a row
+   *
+   * @return Sum of the absolute values of the filtered bytes (as signed bytes), a heuristic for how well the row will
+   * compress
+   */
+  private static long applyFilter(int type, byte[] row, byte[] previous, int bytesPerPixel, byte[] out) {
+    long score = 0;
+    int n = row.length;
+    switch (type) {
+      case FILTER_SUB:
+        for (int i = 0; i < n; i++) {
+          byte value = (byte) (row[i] - (i >= bytesPerPixel ? row[i - bytesPerPixel] : 0));
+          out[i] = value;
+          score += Math.abs(value);
+        }
+        break;
+      case FILTER_UP:
+        for (int i = 0; i < n; i++) {
+          byte value = (byte) (row[i] - previous[i]);
+          out[i] = value;
+          score += Math.abs(value);
+        }
+        break;
+      case FILTER_AVERAGE:
+        for (int i = 0; i < n; i++) {
+          int a = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xff : 0;
+          byte value = (byte) (row[i] - ((a + (previous[i] & 0xff)) >> 1));
+          out[i] = value;
+          score += Math.abs(value);
+        }
+        break;
+      case FILTER_PAETH:
+        for (int i = 0; i < n; i++) {
+          int a = 0, c = 0;
+          if (i >= bytesPerPixel) {
+            a = row[i - bytesPerPixel] & 0xff;
+            c = previous[i - bytesPerPixel] & 0xff;
+          }
+          byte value = (byte) (row[i] - paeth(a, previous[i] & 0xff, c));
+          out[i] = value;
+          score += Math.abs(value);
+        }
+        break;
+      default:
+        for (int i = 0; i < n; i++) {
+          out[i] = row[i];
+          score += Math.abs(row[i]);
+        }
+    }
+    return score;
+  }
+
+  private static int paeth(int a, int b, int c) {
+    int p = a + b - c;
+    int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+    if (pa <= pb && pa <= pc) {
+      return a;
+    }
+    return pb <= pc ? b : c;
+  }
+
+  /**
+   * Adler-32 checksum of two consecutive blocks of data, given the checksum of each
+   *
+   * @param first  checksum of the first block
+   * @param second checksum of the second block
+   * @param length of the second block
+   * @return Checksum of both blocks
+   */
+  private static long combineAdler32(long first, long second, long length) {
+    long remainder = length % ADLER_BASE;
+    long sum1 = first & 0xffff;
+    long sum2 = (remainder * sum1) % ADLER_BASE;
+    sum1 += (second & 0xffff) + ADLER_BASE - 1;
+    sum2 += ((first >> 16) & 0xffff) + ((second >> 16) & 0xffff) + ADLER_BASE - remainder;
+    if (sum1 >= ADLER_BASE) {
+      sum1 -= ADLER_BASE;
+    }
+    if (sum1 >= ADLER_BASE) {
+      sum1 -= ADLER_BASE;
+    }
+    if (sum2 >= 2L * ADLER_BASE) {
+      sum2 -= 2L * ADLER_BASE;
+    }
+    if (sum2 >= ADLER_BASE) {
+      sum2 -= ADLER_BASE;
+    }
+    return sum1 | (sum2 << 16);
+  }
+
+  private static void writeHeader(DataOutputStream out, int width, int height, boolean alpha) throws IOException {
+    ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+    DataOutputStream headerData = new DataOutputStream(header);
+    headerData.writeInt(width);
+    headerData.writeInt(height);
+    headerData.writeByte(8);
+    headerData.writeByte(alpha ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB);
+    headerData.writeByte(0);
+    headerData.writeByte(0);
+    headerData.writeByte(0);
+    writeChunk(out, "IHDR", header.toByteArray(), header.size());
+  }
+
+  private static void writeChunk(DataOutputStream out, String type, byte[] data, int length) throws IOException {
+    byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+    CRC32 crc = new CRC32();
+    crc.update(name);
+    crc.update(data, 0, length);
+    out.writeInt(length);
+    out.write(name);
+    out.write(data, 0, length);
+    out.writeInt((int) crc.getValue());
+  }
+}
@@ -0,0 +1,403 @@
+package org.gannacademy.cdf.graphics.ui;
+
+import java.awt.*;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * <p>Write an SVG document, one element at a time</p>
+ *
+ * <p>Elements are written to the output stream as soon as they are added, rather than being collected into a document
+ * in memory first, so that drawings of many thousands of components can be exported quickly and in little memory.
+ * Shapes are written as paths, traced from their {@link PathIterator}, so they remain sharp at any resolution.</p>
+ *
+ * <p>Images are embedded in the document as PNG data. Each distinct image is only embedded once, however many times
+ * it is drawn (e.g. by several {@link org.gannacademy.cdf.graphics.SheetSprite} objects sharing a sprite sheet).</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ * @see DrawingPanel#writeSvg(OutputStream, int, int)
+ */
+public class SvgWriter implements Closeable {
+
+  /**
+   * Number of digits written after the decimal point of coordinates
+   */
+  private static final int PRECISION = 1000;
+
+  /**
+   * Default SVG stroke miter limit (Java defaults to 10)
+   */
+  private static final float SVG_MITER_LIMIT = 4;
+
+  private final OutputStream stream;
+  private final Writer out;
+
+  /**
+   * Identifiers of images that have already been embedded
+   */
+  private final Map<BufferedImage, String> images = new IdentityHashMap<>();
+
+  private boolean closed = false;
+
+  /**
+   * Start writing an SVG document
+   *
+   * @param stream to which to write (which is not closed)
+   * @param width  of the document
+   * @param height of the document
+   * @throws IOException if the stream cannot be written
+   */
+  public SvgWriter(OutputStream stream, int width, int height) throws IOException {
+    this.stream = stream;
+    out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" version=\"1.1\"");
+    out.write(" width=\"" + width + "\" height=\"" + height + "\" viewBox=\"0 0 " + width + " " + height + "\">\n");
+  }
+
+  /**
+   * Write a shape
+   *
+   * @param shape       to write
+   * @param fill        color (or {@code null} not to fill the shape)
+   * @param stroke      with which to outline the shape (or {@code null} not to outline the shape)
+   * @param strokeColor color (or {@code null} not to outline the shape)
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeShape(Shape shape, Color fill, Stroke stroke, Color strokeColor) throws IOException {
+    boolean filled = isVisible(fill), stroked = stroke != null && isVisible(strokeColor);
+    if (stroked && !(stroke instanceof BasicStroke)) {
+      // SVG can only describe basic strokes, so fill the outline of any other kind instead
+      writeShape(shape, fill, null, null);
+      writeShape(stroke.createStrokedShape(shape), strokeColor, null, null);
+      return;
+    }
+    if (!filled && !stroked) {
+      return;
+    }
+    out.write("<path d=\"");
+    PathIterator path = shape.getPathIterator(null);
+    boolean evenOdd = path.getWindingRule() == PathIterator.WIND_EVEN_ODD;
+    writePath(path);
+    out.write('"');
+    if (filled) {
+      writePaint("fill", fill);
+      if (evenOdd) {
+        out.write(" fill-rule=\"evenodd\"");
+      }
+    } else {
+      out.write(" fill=\"none\"");
+    }
+    if (stroked) {
+      writePaint("stroke", strokeColor);
+      writeStroke((BasicStroke) stroke);
+    }
+    out.write("/>\n");
+  }
+
+  /**
+   * Write a line of text
+   *
+   * @param text  to write
+   * @param font  in which to write it
+   * @param x     coordinate of the left end of the baseline
+   * @param y     coordinate of the baseline
+   * @param color of the text
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeText(String text, Font font, double x, double y, Color color) throws IOException {
+    if (!isVisible(color) || text.isEmpty()) {
+      return;
+    }
+    out.write("<text x=\"");
+    writeNumber(x);
+    out.write("\" y=\"");
+    writeNumber(y);
+    out.write("\" font-family=\"");
+    writeEscaped(fontFamily(font));
+    out.write("\" font-size=\"");
+    writeNumber(font.getSize2D());
+    out.write('"');
+    if (font.isBold()) {
+      out.write(" font-weight=\"bold\"");
+    }
+    if (font.isItalic()) {
+      out.write(" font-style=\"italic\"");
+    }
+    writePaint("fill", color);
+    out.write(" xml:space=\"preserve\">");
+    writeEscaped(text);
+    out.write("</text>\n");
+  }
+
+  /**
+   * Write an image
+   *
+   * @param image  to write
+   * @param x      coordinate of the image origin
+   * @param y      coordinate of the image origin
+   * @param width  at which to draw the image
+   * @param height at which to draw the image
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeImage(BufferedImage image, double x, double y, double width, double height) throws IOException {
+    writeImage(image, new Rectangle(0, 0, image.getWidth(), image.getHeight()), x, y, width, height);
+  }
+
+  /**
+   * Write a region of an image
+   *
+   * @param image  containing the region
+   * @param region of the image to write
+   * @param x      coordinate at which to draw the region
+   * @param y      coordinate at which to draw the region
+   * @param width  at which to draw the region
+   * @param height at which to draw the region
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeImage(BufferedImage image, Rectangle region, double x, double y, double width, double height) throws IOException {
+    if (width <= 0 || height <= 0 || region.isEmpty()) {
+      return;
+    }
+    String id = embed(image);
+    out.write("<svg x=\"");
+    writeNumber(x);
+    out.write("\" y=\"");
+    writeNumber(y);
+    out.write("\" width=\"");
+    writeNumber(width);
+    out.write("\" height=\"");
+    writeNumber(height);
+    out.write("\" viewBox=\"" + region.x + " " + region.y + " " + region.width + " " + region.height + "\"");
+    out.write(" preserveAspectRatio=\"none\"><use xlink:href=\"#" + id + "\"/></svg>\n");
+  }
+
+  /**
+   * Finish the document (the stream is not closed)
+   *
+   * @throws IOException if the stream cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    out.write("</svg>\n");
+    out.flush();
+  }
+
+  /**
+   * Embed an image as PNG data, unless it has already been embedded
+   *
+   * @param image to embed
+   * @return Identifier of the embedded image
+   */
+  private String embed(BufferedImage image) throws IOException {
+    String id = images.get(image);
+    if (id == null) {
+      id = "image" + images.size();
+      images.put(image, id);
+      out.write("<defs><image id=\"" + id + "\" width=\"" + image.getWidth() + "\" height=\"" + image.getHeight() + "\"");
+      out.write(" xlink:href=\"data:image/png;base64,");
+      out.flush();
+      // Base64 is plain ASCII, so it can be encoded straight into the underlying stream
+      try (OutputStream base64 = Base64.getEncoder().wrap(new FilterOutputStream(stream) {
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+          stream.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+          flush();
+        }
+      })) {
+        new PngEncoder().write(image, base64);
+      }
+      out.write("\"/></defs>\n");
+    }
+    return id;
+  }
+
+  private void writePath(PathIterator path) throws IOException {
+    double[] coordinates = new double[6];
+    for (boolean first = true; !path.isDone(); path.next(), first = false) {
+      int points;
+      char command;
+      switch (path.currentSegment(coordinates)) {
+        case PathIterator.SEG_MOVETO:
+          command = 'M';
+          points = 1;
+          break;
+        case PathIterator.SEG_LINETO:
+          command = 'L';
+          points = 1;
+          break;
+        case PathIterator.SEG_QUADTO:
+          command = 'Q';
+          points = 2;
+          break;
+        case PathIterator.SEG_CUBICTO:
+          command = 'C';
+          points = 3;
+          break;
+        default:
+          command = 'Z';
+          points = 0;
+      }
+      if (!first) {
+        out.write(' ');
+      }
+      out.write(command);
+      for (int i = 0; i < points * 2; i++) {
+        if (i > 0) {
+          out.write(' ');
+        }
+        writeNumber(coordinates[i]);
+      }
+    }
+  }
+
+  private void writeStroke(BasicStroke stroke) throws IOException {
+    out.write(" stroke-width=\"");
+    writeNumber(stroke.getLineWidth());
+    out.write('"');
+    switch (stroke.getEndCap()) {
+      case BasicStroke.CAP_ROUND:
+        out.write(" stroke-linecap=\"round\"");
+        break;
+      case BasicStroke.CAP_SQUARE:
+        out.write(" stroke-linecap=\"square\"");
+        break;
+      default:
+    }
+    switch (stroke.getLineJoin()) {
+      case BasicStroke.JOIN_ROUND:
+        out.write(" stroke-linejoin=\"round\"");
+        break;
+      case BasicStroke.JOIN_BEVEL:
+        out.write(" stroke-linejoin=\"bevel\"");
+        break;
+      default:
+        if (stroke.getMiterLimit() != SVG_MITER_LIMIT) {
+          out.write(" stroke-miterlimit=\"");
+          writeNumber(Math.max(1, stroke.getMiterLimit()));
+          out.write('"');
+        }
+    }
+    float[] dashes = stroke.getDashArray();
+    if (dashes != null && dashes.length > 0) {
+      out.write(" stroke-dasharray=\"");
+      for (int i = 0; i < dashes.length; i++) {
+        if (i > 0) {
+          out.write(' ');
+        }
+        writeNumber(dashes[i]);
+      }
+      out.write('"');
+      if (stroke.getDashPhase() != 0) {
+        out.write(" stroke-dashoffset=\"");
+        writeNumber(stroke.getDashPhase());
+        out.write('"');
+      }
+    }
+  }
+
+  /**
+   * Write a color as a presentation attribute (and its opacity, if it is translucent)
+   */
+  private void writePaint(String attribute, Color color) throws IOException {
+    out.write(' ');
+    out.write(attribute);
+    out.write("=\"#");
+    String rgb = Integer.toHexString(color.getRGB() & 0xffffff);
+    for (int i = rgb.length(); i < 6; i++) {
+      out.write('0');
+    }
+    out.write(rgb);
+    out.write('"');
+    if (color.getAlpha() < 255) {
+      out.write(' ');
+      out.write(attribute);
+      out.write("-opacity=\"");
+      writeNumber(color.getAlpha() / 255.0);
+      out.write('"');
+    }
+  }
+
+  /**
+   * Write a number, rounded to three decimal places, without trailing zeroes
+   */
+  private void writeNumber(double value) throws IOException {
+    long scaled = Math.round(value * PRECISION);
+    if (scaled < 0) {
+      out.write('-');
+      scaled = -scaled;
+    }
+    out.write(Long.toString(scaled / PRECISION));
+    long fraction = scaled % PRECISION;
+    if (fraction != 0) {
+      out.write('.');
+      for (long digit = PRECISION / 10; fraction != 0; digit /= 10) {
+        out.write((char) ('0' + fraction / digit));
+        fraction %= digit;
+      }
+    }
+  }
+
+  private void writeEscaped(String text) throws IOException {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '<':
+          out.write("&lt;");
+          break;
+        case '>':
+          out.write("&gt;");
+          break;
+        case '&':
+          out.write("&amp;");
+          break;
+        case '"':
+          out.write("&quot;");
+          break;
+        default:
+          out.write(c);
+      }
+    }
+  }
+
+  /**
+   * CSS font family list for a font, mapping Java's logical fonts to the generic CSS families
+   */
+  private static String fontFamily(Font font) {
+    switch (font.getFamily()) {
+      case Font.SERIF:
+        return "serif";
+      case Font.MONOSPACED:
+      case Font.DIALOG_INPUT:
+        return "monospace";
+      case Font.SANS_SERIF:
+      case Font.DIALOG:
+        return "sans-serif";
+      default:
+        return "'" + font.getFamily().replace("'", "\\'") + "', sans-serif";
+    }
+  }
+
+  private static boolean isVisible(Color color) {
+    return color != null && color.getAlpha() > 0;
+  }
+}
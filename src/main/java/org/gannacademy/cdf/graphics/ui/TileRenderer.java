@@ -0,0 +1,261 @@
+package org.gannacademy.cdf.graphics.ui;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>Render a {@link DrawingPanel} on several threads at once</p>
+ *
+ * <p>{@link DrawingPanel#draw(Graphics2D)} draws every component on a single thread. A tile renderer instead divides
+ * the image into square tiles, and then draws the tiles concurrently on the threads of a {@link ForkJoinPool}, each
+ * tile clipped to its own region of the shared image. The drawable components are first sorted into the tiles that
+ * their rendered bounds overlap, and each tile is then drawn by {@link DrawingPanel#draw(Graphics2D)} from its own
+ * share of the components, in the same order as they would be drawn by the drawing panel, so the result looks the
+ * same, including any drawing added by a subclass of the drawing panel. Drawings made up of many components gain the
+ * most.</p>
+ *
+ * <p>A tile renderer can be used to export images (see {@link #render(int, int)}) or, once attached to its drawing
+ * panel with {@link DrawingPanel#setTileRenderer(TileRenderer)}, to draw the drawing panel on screen (by way of a
+ * back buffer) and whenever the drawing panel is rendered or saved.</p>
+ *
+ * <p>Because every tile is drawn by {@link DrawingPanel#draw(Graphics2D)}, subclasses of the drawing panel that
+ * override it (or {@link DrawingPanel#preDraw(Graphics2D)}) must be safe to call from several threads at once.</p>
+ *
+ * <p>Tiles draw each component from its committed state, which never changes once committed. The caches that
+ * components share are safe to use from several tiles at once: text layouts are looked up in a synchronized cache,
+ * and an image is rescaled once, under a lock, after which every tile draws the rescaled copy without locking.</p>
+ *
+ * <p>Because each tile is clipped separately, antialiased edges that cross a tile boundary may differ very slightly
+ * (by a shade or two) from the same edges drawn on a single thread.</p>
+ *
+ * @author <a href="https://github.com/gann-cdf/graphics/issues" target="_blank">Seth Battis</a>
+ */
+public class TileRenderer {
+
+  /**
+   * Defaults to tiles of 128×128 pixels
+   */
+  public static final int DEFAULT_TILE_SIZE = 128;
+
+  private final DrawingPanel drawingPanel;
+  private final int tileSize;
+  private final ForkJoinPool pool;
+
+  /**
+   * Construct a tile renderer using the default tile size and the common fork-join pool
+   *
+   * @param drawingPanel to render
+   */
+  public TileRenderer(DrawingPanel drawingPanel) {
+    this(drawingPanel, DEFAULT_TILE_SIZE, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Construct a tile renderer
+   *
+   * @param drawingPanel to render
+   * @param tileSize     width and height of each tile, in pixels
+   * @param pool         of threads on which to draw tiles
+   */
+  public TileRenderer(DrawingPanel drawingPanel, int tileSize, ForkJoinPool pool) {
+    if (tileSize < 1) {
+      throw new IllegalArgumentException("Tiles must be at least one pixel in size");
+    }
+    this.drawingPanel = drawingPanel;
+    this.tileSize = tileSize;
+    this.pool = pool;
+  }
+
+  /**
+   * Drawing panel rendered
+   *
+   * @return Drawing panel
+   */
+  public DrawingPanel getDrawingPanel() {
+    return drawingPanel;
+  }
+
+  /**
+   * Tile size
+   *
+   * @return Width and height of each tile, in pixels
+   */
+  public int getTileSize() {
+    return tileSize;
+  }
+
+  /**
+   * Render the drawing panel into a new image
+   *
+   * @param width  of the image
+   * @param height of the image
+   * @return New image containing the background and all drawable components
+   * @see DrawingPanel#render(int, int)
+   */
+  public BufferedImage render(int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    render(image, 0, 0);
+    return image;
+  }
+
+  /**
+   * Render the drawing panel into an existing image
+   *
+   * @param image into which to render
+   * @see DrawingPanel#render(BufferedImage)
+   */
+  public void render(BufferedImage image) {
+    render(image, 0, 0);
+  }
+
+  /**
+   * Render a region of the drawing panel into an existing image
+   *
+   * <p>If the calling thread is interrupted while the tiles are being drawn, the tiles that have not yet started are
+   * skipped, leaving the image partly rendered, and the thread's interrupt status is set.</p>
+   *
+   * @param image into which to render
+   * @param x     coordinate of the region origin
+   * @param y     coordinate of the region origin
+   * @see DrawingPanel#render(BufferedImage, int, int)
+   */
+  public void render(BufferedImage image, int x, int y) {
+    drawingPanel.commit();
+    render(image, x, y, new Rectangle(x, y, image.getWidth(), image.getHeight()), false);
+  }
+
+  /**
+   * Render part of a region of the drawing panel into an existing image (without committing changes first)
+   *
+   * @param image    into which to render
+   * @param x        coordinate of the drawing panel point drawn at the top, left corner of {@code image}
+   * @param y        coordinate of the drawing panel point drawn at the top, left corner of {@code image}
+   * @param region   of the drawing panel to render, which must lie within {@code image}
+   * @param onScreen {@code true} if rendering a frame for the screen, which records where each component was drawn,
+   *                 {@code false} if rendering off screen (e.g. to export an image)
+   * @return {@code true} if every tile was drawn, {@code false} if the calling thread was interrupted (in which case the
+   * image is only partly rendered, although no tile is still being drawn into it when this method returns)
+   */
+  boolean render(BufferedImage image, int x, int y, Rectangle region, boolean onScreen) {
+    if (region.isEmpty()) {
+      return true;
+    }
+    int columns = (region.width + tileSize - 1) / tileSize, rows = (region.height + tileSize - 1) / tileSize;
+    List<List<DisplayList.Node>> tiles = sort(region, columns, rows);
+    Color background = drawingPanel.getBackground();
+    List<Future<Void>> futures = new ArrayList<>(tiles.size());
+    ReadWriteLock drawing = new ReentrantReadWriteLock();
+    boolean[] cancelled = {false};
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        DisplayList.Node[] nodes = tiles.get(row * columns + column).toArray(new DisplayList.Node[0]);
+        Rectangle tile = new Rectangle(region.x + column * tileSize, region.y + row * tileSize, tileSize, tileSize)
+                .intersection(region);
+        futures.add(pool.submit(() -> {
+          drawing.readLock().lock();
+          try {
+            if (!cancelled[0]) {
+              draw(image, x, y, tile, background, onScreen, nodes);
+            }
+          } finally {
+            drawing.readLock().unlock();
+          }
+          return null;
+        }));
+      }
+    }
+    boolean completed = false;
+    try {
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+      completed = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException("Could not render tile", e.getCause());
+    } finally {
+      if (!completed) {
+        // skip the tiles that have not started, and wait for those being drawn, so that none outlives this call
+        drawing.writeLock().lock();
+        try {
+          cancelled[0] = true;
+        } finally {
+          drawing.writeLock().unlock();
+        }
+        for (Future<Void> future : futures) {
+          future.cancel(false);
+        }
+      }
+    }
+    return completed;
+  }
+
+  /**
+   * Sort the components of the drawing panel into the tiles that their committed rendered bounds overlap
+   *
+   * @param region  of the drawing panel divided into tiles
+   * @param columns of tiles
+   * @param rows    of tiles
+   * @return Components overlapping each tile (from left to right, then top to bottom), in drawing order
+   */
+  private List<List<DisplayList.Node>> sort(Rectangle region, int columns, int rows) {
+    List<List<DisplayList.Node>> tiles = new ArrayList<>(columns * rows);
+    for (int i = 0; i < columns * rows; i++) {
+      tiles.add(new ArrayList<>());
+    }
+    for (DisplayList.Node node : drawingPanel.snapshot()) {
+      Rectangle2D bounds;
+      synchronized (node) {
+        bounds = node.bounds();
+      }
+      if (bounds == null || !bounds.intersects(region)) {
+        continue;
+      }
+      int left = Math.max(0, (int) Math.floor((bounds.getMinX() - region.x) / tileSize));
+      int top = Math.max(0, (int) Math.floor((bounds.getMinY() - region.y) / tileSize));
+      int right = Math.min(columns - 1, (int) Math.ceil((bounds.getMaxX() - region.x) / tileSize) - 1);
+      int bottom = Math.min(rows - 1, (int) Math.ceil((bounds.getMaxY() - region.y) / tileSize) - 1);
+      for (int row = top; row <= bottom; row++) {
+        for (int column = left; column <= right; column++) {
+          tiles.get(row * columns + column).add(node);
+        }
+      }
+    }
+    return tiles;
+  }
+
+  /**
+   * Fill a tile with the background color and draw the components that overlap it by way of the drawing panel,
+   * clipped to the tile
+   */
+  private void draw(BufferedImage image, int x, int y, Rectangle tile, Color background, boolean onScreen,
+                    DisplayList.Node[] nodes) {
+    Graphics2D context = image.createGraphics();
+    try {
+      context.translate(-x, -y);
+      context.setComposite(AlphaComposite.Src);
+      context.setPaint(background);
+      context.fillRect(tile.x, tile.y, tile.width, tile.height);
+      context.setComposite(AlphaComposite.SrcOver);
+      context.clipRect(tile.x, tile.y, tile.width, tile.height);
+      drawingPanel.drawTile(context, onScreen, nodes);
+    } finally {
+      context.dispose();
+    }
+  }
+}